@@ -0,0 +1,35 @@
+package racingthing;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BvhBuildBenchmark {
+    @Param({ "SAH", "MEDIAN" })
+    BvhBuilder.Split split;
+
+    @Param({ "1", "8" })
+    int leafSize;
+
+    // 2147483647 is BvhBuilder.SEQUENTIAL
+    @Param({ "4096", "2147483647" })
+    int parallelCutoff;
+
+    double[] tris;
+
+    @Setup
+    public void load() throws IOException {
+        tris = CollisionMesh.loadTriangles(Assets.resolve("assets/Maps/TestMap/TestMap.obj"));
+    }
+
+    @Benchmark
+    public LinearBvh build() {
+        return new BvhBuilder(split, leafSize, 16, 1.0, 2.0, parallelCutoff).build(tris, tris.length / 9);
+    }
+}
@@ -0,0 +1,62 @@
+package racingthing;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javafx.geometry.Point3D;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarBenchmark {
+    // 0 never converges early, every tick runs all 200 sweeps
+    @Param({ "1e-4", "0" })
+    double stickTolerance;
+
+    // rigid chassis sticks, or XPBD ones that give a little
+    @Param({ "0", "1e-3" })
+    double stickCompliance;
+
+    // on its chassis spheres or on raycast wheels
+    @Param({ "false", "true" })
+    boolean wheels;
+
+    Car car;
+    double[] settled, settledPrev;
+
+    // let the car drop onto the track first so the tick measures contact, not free fall
+    @Setup
+    public void setup() throws IOException {
+        car = new Car(
+            new Point3D(0.724999, -4.63841, 95.6295),
+            new CollisionMesh(Assets.resolve("assets/Maps/TestMap/TestMap.obj"), 8),
+            Assets.resolve("assets/Models/Car/ChassisCollision.txt"),
+            wheels ? Assets.resolve("assets/Models/Car/WheelCollision.txt") : null
+        );
+        car.stickTolerance = stickTolerance;
+        car.stickCompliance = stickCompliance;
+        for (int i = 0; i < 600; i++) car.update();
+        settled = car.getParticles().pos.clone();
+        settledPrev = car.getParticles().prev.clone();
+    }
+
+    @Benchmark
+    public double update() {
+        ParticleSystem p = car.getParticles();
+        System.arraycopy(settled, 0, p.pos, 0, settled.length);
+        System.arraycopy(settledPrev, 0, p.prev, 0, settledPrev.length);
+        car.update();
+        return p.pos[0];
+    }
+
+    @Benchmark
+    public double solveConstraints() {
+        ParticleSystem p = car.getParticles();
+        System.arraycopy(settled, 0, p.pos, 0, settled.length);
+        car.solveConstraints();
+        return p.pos[0];
+    }
+}
@@ -0,0 +1,94 @@
+package racingthing;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class CollideBenchmark {
+    static final int SPHERES = 1024;
+
+    @Param({ "0.4", "1.0" })
+    double radius;
+
+    // spheres go back to the same spot every call, so a positive margin
+    // measures the cache hit path and 0 the full BVH walk
+    @Param({ "0.25", "0" })
+    double cacheMargin;
+
+    // TriangleKernel.create() or the scalar one
+    @Param({ "true", "false" })
+    boolean simd;
+
+    LinearBvh bvh;
+    QuantizedBvh compact;
+    ParticleSystem particles;
+    double[] start;
+    // for sweep(): a tick earlier each sphere was 3 radii further out, so
+    // it hits its triangle about halfway through the move
+    double[] sweepFrom;
+
+    // spheres sit just above random track triangles, so most of them touch
+    @Setup
+    public void setup() throws IOException {
+        bvh = new CollisionMesh(Assets.resolve("assets/Maps/TestMap/TestMap.obj"), 8).getBvh();
+        compact = new QuantizedBvh(bvh);
+        particles = new ParticleSystem();
+        particles.cacheMargin = cacheMargin;
+        particles.kernel = simd ? TriangleKernel.create() : TriangleKernel.scalar();
+        Random rng = new Random(42);
+        double[] t = bvh.tris;
+        sweepFrom = new double[SPHERES * 3];
+        for (int i = 0; i < SPHERES; i++) {
+            int o = rng.nextInt(bvh.triCount) * 9;
+            double ux = t[o + 3] - t[o], uy = t[o + 4] - t[o + 1], uz = t[o + 5] - t[o + 2];
+            double vx = t[o + 6] - t[o], vy = t[o + 7] - t[o + 1], vz = t[o + 8] - t[o + 2];
+            double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+            double len = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            double h = len > 0 ? radius * 0.5 / len : 0;
+            double back = len > 0 ? radius * 3 / len : 0;
+            int p = particles.addParticle(
+                (t[o] + t[o + 3] + t[o + 6]) / 3 + nx * h,
+                (t[o + 1] + t[o + 4] + t[o + 7]) / 3 + ny * h,
+                (t[o + 2] + t[o + 5] + t[o + 8]) / 3 + nz * h,
+                radius
+            );
+            sweepFrom[p * 3] = particles.getX(p) + nx * back;
+            sweepFrom[p * 3 + 1] = particles.getY(p) + ny * back;
+            sweepFrom[p * 3 + 2] = particles.getZ(p) + nz * back;
+        }
+        start = particles.pos.clone();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SPHERES)
+    public double collide() {
+        System.arraycopy(start, 0, particles.pos, 0, start.length);
+        particles.collide(bvh);
+        return particles.pos[0];
+    }
+
+    // the full walk against the same track as a QuantizedBvh; ignores
+    // cacheMargin and simd
+    @Benchmark
+    @OperationsPerInvocation(SPHERES)
+    public double collideCompact() {
+        System.arraycopy(start, 0, particles.pos, 0, start.length);
+        particles.collide(compact);
+        return particles.pos[0];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SPHERES)
+    public double sweep() {
+        System.arraycopy(start, 0, particles.pos, 0, start.length);
+        System.arraycopy(sweepFrom, 0, particles.prev, 0, sweepFrom.length);
+        return particles.sweep(bvh);
+    }
+}
@@ -0,0 +1,44 @@
+package racingthing;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LoadBenchmark {
+    @Param({ "assets/Maps/TestMap/TestMap.obj", "assets/Models/Car/Tofu_Car_Chassis.obj" })
+    String obj;
+
+    String path;
+
+    @Setup
+    public void setup() {
+        path = Assets.resolve(obj);
+    }
+
+    @Benchmark
+    public ObjModel objModel() throws IOException {
+        return ObjModel.load(path);
+    }
+
+    @Benchmark
+    public Mesh renderMesh() throws IOException {
+        return new Mesh(path);
+    }
+
+    @Benchmark
+    public double[] collisionTriangles() throws IOException {
+        return CollisionMesh.loadTriangles(path);
+    }
+
+    // warm cache hit: hash the OBJ, map the baked file, copy out the arrays
+    @Benchmark
+    public CollisionMesh bakedCollisionMesh() throws IOException {
+        return CollisionMesh.load(path, new BvhBuilder(BvhBuilder.Split.SAH, 8));
+    }
+}
@@ -0,0 +1,71 @@
+package racingthing;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RayCastBenchmark {
+    static final int RAYS = 256;
+
+    // wheel length rays, or ones that cross most of the track
+    @Param({ "2", "200" })
+    double length;
+
+    LinearBvh bvh;
+    RayCast caster = new RayCast();
+    double[] rays = new double[RAYS * RayCast.RAY], hits = new double[RAYS * RayCast.HIT];
+
+    // rays from a unit above random track triangles, down through them and
+    // on for length, each in a slightly different direction
+    @Setup
+    public void setup() throws IOException {
+        bvh = new CollisionMesh(Assets.resolve("assets/Maps/TestMap/TestMap.obj"), 8).getBvh();
+        Random rng = new Random(42);
+        double[] t = bvh.tris;
+        for (int r = 0; r < RAYS; r++) {
+            int o = rng.nextInt(bvh.triCount) * 9, k = r * RayCast.RAY;
+            rays[k] = (t[o] + t[o + 3] + t[o + 6]) / 3;
+            rays[k + 1] = (t[o + 1] + t[o + 4] + t[o + 7]) / 3 - 1;
+            rays[k + 2] = (t[o + 2] + t[o + 5] + t[o + 8]) / 3;
+            rays[k + 3] = rng.nextGaussian() * 0.2;
+            rays[k + 4] = 1;
+            rays[k + 5] = rng.nextGaussian() * 0.2;
+            rays[k + 6] = length;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS)
+    public int cast() {
+        int n = 0;
+        for (int k = 0; k < RAYS * RayCast.RAY; k += RayCast.RAY) {
+            if (caster.cast(bvh, rays[k], rays[k + 1], rays[k + 2], rays[k + 3], rays[k + 4], rays[k + 5],
+                rays[k + 6])) n++;
+        }
+        return n;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS)
+    public int any() {
+        int n = 0;
+        for (int k = 0; k < RAYS * RayCast.RAY; k += RayCast.RAY) {
+            if (caster.any(bvh, rays[k], rays[k + 1], rays[k + 2], rays[k + 3], rays[k + 4], rays[k + 5],
+                rays[k + 6])) n++;
+        }
+        return n;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS)
+    public int castAll() {
+        return caster.castAll(bvh, rays, RAYS, hits);
+    }
+}
@@ -0,0 +1,89 @@
+package racingthing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javafx.geometry.Point3D;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RigidFitBenchmark {
+    RigidFit fit;
+    double[] ref, cur;
+    double[] quat = new double[4];
+    List<Point3D> refPoints, curOffsets;
+
+    @Setup
+    public void setup() throws IOException {
+        Car car = new Car(
+            new Point3D(0.724999, -4.63841, 95.6295),
+            new CollisionMesh(Assets.resolve("assets/Maps/TestMap/TestMap.obj"), 8),
+            Assets.resolve("assets/Models/Car/ChassisCollision.txt")
+        );
+        int n = car.getParticles().getParticleCount();
+        ref = centred(car.getParticles().pos, n);
+        for (int i = 0; i < 600; i++) car.update();
+        cur = car.getParticles().pos.clone();
+
+        double[] c = centred(cur, n);
+        refPoints = new ArrayList<>();
+        curOffsets = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            refPoints.add(new Point3D(ref[i * 3], ref[i * 3 + 1], ref[i * 3 + 2]));
+            curOffsets.add(new Point3D(c[i * 3], c[i * 3 + 1], c[i * 3 + 2]));
+        }
+        fit = new RigidFit();
+    }
+
+    static double[] centred(double[] pos, int n) {
+        double[] out = new double[n * 3];
+        double[] m = new double[3];
+        for (int i = 0; i < n * 3; i++) m[i % 3] += pos[i] / n;
+        for (int i = 0; i < n * 3; i++) out[i] = pos[i] - m[i % 3];
+        return out;
+    }
+
+    @Benchmark
+    public double[] rigidFit() {
+        fit.fit(ref, cur, refPoints.size());
+        return fit.getQuaternion(quat);
+    }
+
+    // the 10,000 step power method Car used before RigidFit, kept as a baseline
+    @Benchmark
+    public double[] legacyKabsch() {
+        return computeKabschQuaternion(refPoints, curOffsets);
+    }
+
+    static double[] computeKabschQuaternion(List<Point3D> P, List<Point3D> Q) {
+        int n = P.size();
+        double Sxx=0, Sxy=0, Sxz=0;
+        double Syx=0, Syy=0, Syz=0;
+        double Szx=0, Szy=0, Szz=0;
+        for (int i = 0; i < n; i++) {
+            Point3D p = P.get(i), q = Q.get(i);
+            Sxx += p.getX()*q.getX(); Sxy += p.getX()*q.getY(); Sxz += p.getX()*q.getZ();
+            Syx += p.getY()*q.getX(); Syy += p.getY()*q.getY(); Syz += p.getY()*q.getZ();
+            Szx += p.getZ()*q.getX(); Szy += p.getZ()*q.getY(); Szz += p.getZ()*q.getZ();
+        }
+        double[][] K = new double[4][4];
+        K[0][0]=Sxx+Syy+Szz; K[0][1]=Syz-Szy;   K[0][2]=Szx-Sxz;   K[0][3]=Sxy-Syx;
+        K[1][0]=K[0][1];      K[1][1]=Sxx-Syy-Szz; K[1][2]=Sxy+Syx;   K[1][3]=Szx+Sxz;
+        K[2][0]=K[0][2];      K[2][1]=K[1][2];      K[2][2]=-Sxx+Syy-Szz;K[2][3]=Syz+Szy;
+        K[3][0]=K[0][3];      K[3][1]=K[1][3];      K[3][2]=K[2][3];      K[3][3]=-Sxx-Syy+Szz;
+        double[] q = {1,0.1,0.1,0.1};
+        for (int it=0; it<10000; it++) {
+            double[] q2 = new double[4];
+            for (int r=0; r<4; r++) for (int c=0; c<4; c++) q2[r]+=K[r][c]*q[c];
+            double norm=0; for(double v:q2) norm+=v*v; norm=Math.sqrt(norm);
+            for(int i=0;i<4;i++) q[i]=q2[i]/norm;
+        }
+        return q;
+    }
+}
@@ -0,0 +1,57 @@
+package racingthing;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import javafx.geometry.Point3D;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorldBenchmark {
+    @Param({ "1", "8", "32" })
+    int cars;
+
+    // 0 uses the common pool
+    @Param({ "1", "0" })
+    int threads;
+
+    // a run steps long enough for cars to settle and fall asleep, which
+    // would turn the measurement into one of empty ticks; -p sleep=true
+    // to see that
+    @Param({ "false" })
+    boolean sleep;
+
+    World world;
+    ForkJoinPool pool;
+
+    @Setup
+    public void setup() throws IOException {
+        pool = threads == 0 ? ForkJoinPool.commonPool() : new ForkJoinPool(threads);
+        world = new World(CollisionMesh.load(Assets.resolve("assets/Maps/TestMap/TestMap.obj"),
+            new BvhBuilder(BvhBuilder.Split.SAH, 8)), pool);
+        for (int i = 0; i < cars; i++) {
+            Car car = world.addCar(
+                World.gridSlot(new Point3D(0.724999, -4.63841, 95.6295), i),
+                Assets.resolve("assets/Models/Car/ChassisCollision.txt")
+            );
+            if (!sleep) car.sleepTicks = 0;
+        }
+        for (int i = 0; i < 600; i++) world.step();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != ForkJoinPool.commonPool()) pool.shutdown();
+    }
+
+    @Benchmark
+    public World step() {
+        world.step();
+        return world;
+    }
+}
@@ -0,0 +1,26 @@
+package racingthing;
+
+import java.io.File;
+
+public class Assets {
+    private static File root;
+
+    // resolves a path like "assets/Maps/..." against the project root, found
+    // from -Dracingthing.root or by walking up from the working directory
+    public static String resolve(String path) {
+        return new File(root(), path).getPath();
+    }
+
+    private static synchronized File root() {
+        if (root == null) {
+            String prop = System.getProperty("racingthing.root");
+            File dir = new File(prop != null ? prop : System.getProperty("user.dir")).getAbsoluteFile();
+            File found = dir;
+            while (found != null && !new File(found, "assets").isDirectory()) {
+                found = found.getParentFile();
+            }
+            root = found != null ? found : dir;
+        }
+        return root;
+    }
+}
@@ -0,0 +1,364 @@
+package racingthing;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+
+public class BvhBuilder {
+    public enum Split { MEDIAN, SAH }
+
+    public static final int SEQUENTIAL = Integer.MAX_VALUE;
+
+    final Split split;
+    final int maxLeafSize;
+    final int bins;
+    final double traversalCost;
+    final double intersectionCost;
+    // subtrees with fewer triangles than this are built on one thread
+    final int parallelCutoff;
+
+    public BvhBuilder(Split split, int maxLeafSize) {
+        this(split, maxLeafSize, 16, 1.0, 2.0);
+    }
+
+    public BvhBuilder(Split split, int maxLeafSize, int bins, double traversalCost, double intersectionCost) {
+        this(split, maxLeafSize, bins, traversalCost, intersectionCost, 4096);
+    }
+
+    public BvhBuilder(Split split, int maxLeafSize, int bins, double traversalCost, double intersectionCost,
+                      int parallelCutoff) {
+        this.split = split;
+        this.maxLeafSize = Math.max(1, maxLeafSize);
+        this.bins = bins;
+        this.traversalCost = traversalCost;
+        this.intersectionCost = intersectionCost;
+        this.parallelCutoff = Math.max(2, parallelCutoff);
+    }
+
+    public LinearBvh build(double[] tris, int triCount) {
+        return build(tris, triCount, ForkJoinPool.commonPool());
+    }
+
+    // the split decisions only depend on the triangles in a node's range, and
+    // each range is partitioned by exactly one task, so the result is the same
+    // for any pool size and cutoff
+    public LinearBvh build(double[] tris, int triCount, ForkJoinPool pool) {
+        Build b = new Build(tris, triCount);
+        if (triCount >= parallelCutoff) {
+            pool.submit(() -> IntStream.range(0, triCount).parallel().forEach(b::prepare)).join();
+        } else {
+            for (int t = 0; t < triCount; t++) b.prepare(t);
+        }
+
+        Nodes out = triCount == 0 ? new Nodes(1) : pool.invoke(new Subtree(b, 0, triCount, 1));
+
+        double[] packed = new double[triCount * 9];
+        for (int i = 0; i < triCount; i++) {
+            System.arraycopy(tris, b.order[i] * 9, packed, i * 9, 9);
+        }
+        return new LinearBvh(
+            Arrays.copyOf(out.bounds, out.count * 6),
+            Arrays.copyOf(out.nodes, out.count * 2),
+            packed, out.count, triCount, out.depth,
+            expectedCost(out)
+        );
+    }
+
+    // per build inputs shared by every task; tasks only touch their own
+    // slice of order
+    private static final class Build {
+        final double[] tris, centroids, triBounds;
+        final int[] order;
+
+        Build(double[] tris, int triCount) {
+            this.tris = tris;
+            centroids = new double[triCount * 3];
+            triBounds = new double[triCount * 6];
+            order = new int[triCount];
+        }
+
+        void prepare(int t) {
+            order[t] = t;
+            int o = t * 9, b = t * 6;
+            empty(triBounds, b);
+            for (int k = 0; k < 3; k++) {
+                expand(triBounds, b, tris[o + k * 3], tris[o + k * 3 + 1], tris[o + k * 3 + 2]);
+            }
+            for (int a = 0; a < 3; a++) {
+                centroids[t * 3 + a] = (tris[o + a] + tris[o + 3 + a] + tris[o + 6 + a]) / 3.0;
+            }
+        }
+    }
+
+    // depth first node arrays of one subtree, indices relative to its root
+    private static final class Nodes {
+        double[] bounds;
+        int[] nodes;
+        int count, depth;
+
+        Nodes(int capacity) {
+            bounds = new double[capacity * 6];
+            nodes = new int[capacity * 2];
+        }
+
+        int add() {
+            if (count * 6 >= bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                nodes = Arrays.copyOf(nodes, nodes.length * 2);
+            }
+            return count++;
+        }
+
+        void append(Nodes sub) {
+            int base = count;
+            while (count + sub.count > bounds.length / 6) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                nodes = Arrays.copyOf(nodes, nodes.length * 2);
+            }
+            System.arraycopy(sub.bounds, 0, bounds, base * 6, sub.count * 6);
+            for (int i = 0; i < sub.count; i++) {
+                int first = sub.nodes[i * 2], n = sub.nodes[i * 2 + 1];
+                nodes[(base + i) * 2] = n > 0 ? first : first + base;
+                nodes[(base + i) * 2 + 1] = n;
+            }
+            count += sub.count;
+            depth = Math.max(depth, sub.depth);
+        }
+    }
+
+    private final class Subtree extends RecursiveTask<Nodes> {
+        private static final long serialVersionUID = 1L;
+        final Build b;
+        final int start, end, depth;
+
+        Subtree(Build b, int start, int end, int depth) {
+            this.b = b;
+            this.start = start;
+            this.end = end;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Nodes compute() {
+            Splitter s = new Splitter(b);
+            if (end - start < parallelCutoff) {
+                Nodes out = new Nodes(Math.max(1, 2 * (end - start) / maxLeafSize + 1));
+                s.build(out, start, end, depth);
+                return out;
+            }
+
+            Nodes out = new Nodes(1);
+            int node = out.add();
+            out.depth = depth;
+            int mid = s.node(out, node, start, end);
+            if (mid < 0) return out;
+
+            Subtree left = new Subtree(b, start, mid, depth + 1);
+            Subtree right = new Subtree(b, mid, end, depth + 1);
+            left.fork();
+            Nodes r = right.compute();
+            Nodes l = left.join();
+            out.append(l);
+            out.nodes[node * 2] = out.count;
+            out.nodes[node * 2 + 1] = 0;
+            out.append(r);
+            return out;
+        }
+    }
+
+    // split search with its own scratch, one per task
+    private final class Splitter {
+        final double[] centroids, triBounds;
+        final int[] order;
+        final double[] binBounds = new double[bins * 6], rightArea = new double[bins];
+        final double[] acc = new double[6], cMin = new double[3], cMax = new double[3];
+        final int[] binCount = new int[bins];
+
+        Splitter(Build b) {
+            centroids = b.centroids;
+            triBounds = b.triBounds;
+            order = b.order;
+        }
+
+        void build(Nodes out, int start, int end, int depth) {
+            out.depth = Math.max(out.depth, depth);
+            int node = out.add();
+            int mid = node(out, node, start, end);
+            if (mid < 0) return;
+            build(out, start, mid, depth + 1);
+            out.nodes[node * 2] = out.count;
+            out.nodes[node * 2 + 1] = 0;
+            build(out, mid, end, depth + 1);
+        }
+
+        // fills in the node's bounds and either makes it a leaf (returns -1)
+        // or partitions its range and returns the split point
+        int node(Nodes out, int node, int start, int end) {
+            int b = node * 6;
+            double[] bounds = out.bounds;
+            empty(bounds, b);
+            for (int i = start; i < end; i++) {
+                merge(bounds, b, triBounds, order[i] * 6);
+            }
+
+            int n = end - start;
+            int mid = n > 1 ? (split == Split.SAH ? sahSplit(bounds, start, end, b) : medianSplit(bounds, start, end, b)) : -1;
+            if (mid < 0) {
+                out.nodes[node * 2] = start;
+                out.nodes[node * 2 + 1] = n;
+            }
+            return mid;
+        }
+
+        int medianSplit(double[] bounds, int start, int end, int b) {
+            if (end - start <= maxLeafSize) return -1;
+            double dx = bounds[b + 3] - bounds[b];
+            double dy = bounds[b + 4] - bounds[b + 1];
+            double dz = bounds[b + 5] - bounds[b + 2];
+            int axis = dx > dy && dx > dz ? 0 : dy > dz ? 1 : 2;
+            int mid = (start + end) >>> 1;
+            select(start, end - 1, mid, axis);
+            return mid;
+        }
+
+        int sahSplit(double[] bounds, int start, int end, int b) {
+            int n = end - start;
+            Arrays.fill(cMin, Double.POSITIVE_INFINITY);
+            Arrays.fill(cMax, Double.NEGATIVE_INFINITY);
+            for (int i = start; i < end; i++) {
+                int c = order[i] * 3;
+                for (int a = 0; a < 3; a++) {
+                    cMin[a] = Math.min(cMin[a], centroids[c + a]);
+                    cMax[a] = Math.max(cMax[a], centroids[c + a]);
+                }
+            }
+
+            double parentArea = area(bounds, b);
+            double bestCost = Double.POSITIVE_INFINITY;
+            int bestAxis = -1, bestBin = -1;
+            for (int a = 0; a < 3; a++) {
+                double extent = cMax[a] - cMin[a];
+                if (extent <= 0) continue;
+                double scale = bins / extent;
+
+                for (int k = 0; k < bins; k++) {
+                    binCount[k] = 0;
+                    empty(binBounds, k * 6);
+                }
+                for (int i = start; i < end; i++) {
+                    int t = order[i];
+                    int k = Math.min(bins - 1, (int) ((centroids[t * 3 + a] - cMin[a]) * scale));
+                    binCount[k]++;
+                    merge(binBounds, k * 6, triBounds, t * 6);
+                }
+
+                empty(acc, 0);
+                for (int k = bins - 1; k > 0; k--) {
+                    merge(acc, 0, binBounds, k * 6);
+                    rightArea[k] = area(acc, 0);
+                }
+                empty(acc, 0);
+                int leftCount = 0;
+                for (int k = 0; k < bins - 1; k++) {
+                    merge(acc, 0, binBounds, k * 6);
+                    leftCount += binCount[k];
+                    int rightCount = n - leftCount;
+                    if (leftCount == 0 || rightCount == 0) continue;
+                    double cost = traversalCost + intersectionCost
+                        * (area(acc, 0) * leftCount + rightArea[k + 1] * rightCount) / parentArea;
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestAxis = a;
+                        bestBin = k;
+                    }
+                }
+            }
+
+            if (bestAxis < 0) {
+                // every centroid coincides, binning cannot separate them
+                return n > maxLeafSize ? medianSplit(bounds, start, end, b) : -1;
+            }
+            if (n <= maxLeafSize && bestCost >= intersectionCost * n) {
+                return -1;
+            }
+
+            double scale = bins / (cMax[bestAxis] - cMin[bestAxis]);
+            int i = start, j = end - 1;
+            while (i <= j) {
+                int t = order[i];
+                int k = Math.min(bins - 1, (int) ((centroids[t * 3 + bestAxis] - cMin[bestAxis]) * scale));
+                if (k <= bestBin) {
+                    i++;
+                } else {
+                    order[i] = order[j];
+                    order[j--] = t;
+                }
+            }
+            return i;
+        }
+
+        void select(int lo, int hi, int k, int axis) {
+            while (hi > lo) {
+                double pivot = centroids[order[(lo + hi) >>> 1] * 3 + axis];
+                int i = lo, j = hi;
+                while (i <= j) {
+                    while (centroids[order[i] * 3 + axis] < pivot) i++;
+                    while (centroids[order[j] * 3 + axis] > pivot) j--;
+                    if (i <= j) {
+                        int t = order[i];
+                        order[i++] = order[j];
+                        order[j--] = t;
+                    }
+                }
+                if (k <= j) {
+                    hi = j;
+                } else if (k >= i) {
+                    lo = i;
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+
+    private double expectedCost(Nodes out) {
+        if (out.count == 0) return 0;
+        double rootArea = area(out.bounds, 0);
+        if (rootArea <= 0) return intersectionCost * out.nodes[1];
+        double cost = 0;
+        for (int i = 0; i < out.count; i++) {
+            int count = out.nodes[i * 2 + 1];
+            double p = area(out.bounds, i * 6) / rootArea;
+            cost += p * (count > 0 ? intersectionCost * count : traversalCost);
+        }
+        return cost;
+    }
+
+    static void empty(double[] box, int o) {
+        box[o] = box[o + 1] = box[o + 2] = Double.POSITIVE_INFINITY;
+        box[o + 3] = box[o + 4] = box[o + 5] = Double.NEGATIVE_INFINITY;
+    }
+
+    static void expand(double[] box, int o, double x, double y, double z) {
+        box[o] = Math.min(box[o], x);
+        box[o + 1] = Math.min(box[o + 1], y);
+        box[o + 2] = Math.min(box[o + 2], z);
+        box[o + 3] = Math.max(box[o + 3], x);
+        box[o + 4] = Math.max(box[o + 4], y);
+        box[o + 5] = Math.max(box[o + 5], z);
+    }
+
+    static void merge(double[] box, int o, double[] other, int p) {
+        for (int a = 0; a < 3; a++) {
+            box[o + a] = Math.min(box[o + a], other[p + a]);
+            box[o + 3 + a] = Math.max(box[o + 3 + a], other[p + 3 + a]);
+        }
+    }
+
+    static double area(double[] box, int o) {
+        double dx = box[o + 3] - box[o], dy = box[o + 4] - box[o + 1], dz = box[o + 5] - box[o + 2];
+        if (dx < 0 || dy < 0 || dz < 0) return 0;
+        return 2 * (dx * dy + dy * dz + dz * dx);
+    }
+}
@@ -0,0 +1,184 @@
+package racingthing;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+// Baked LinearBvh stored next to its OBJ as <obj>.bvh. The header carries the
+// SHA-256 of the OBJ and the builder settings; a file that matches both is
+// mapped and copied straight into the node and triangle arrays, anything else
+// is rebuilt from the OBJ and written back.
+//
+// layout, little endian:
+//   0   int    magic 'RTBV'
+//   4   int    version
+//   8   byte[32] sha-256 of the source OBJ
+//   40  int    split ordinal, max leaf size, bins
+//   52  int    padding
+//   56  double traversal cost, intersection cost
+//   72  int    node count, triangle count, depth
+//   84  int    padding
+//   88  double expected cost
+//   96  double[nodes * 6] bounds, double[tris * 9] triangles, int[nodes * 2] nodes
+public class BvhCache {
+    static final int MAGIC = 0x52544256;
+    static final int VERSION = 1;
+    static final int HEADER = 96;
+    // bytes mapped at once when reading or writing the arrays
+    static final int SECTION = 1 << 30;
+
+    public static LinearBvh load(String objPath, BvhBuilder builder) throws IOException {
+        return load(objPath, null, builder);
+    }
+
+    // model is objPath already parsed, or null to parse it only on a miss
+    public static LinearBvh load(String objPath, ObjModel model, BvhBuilder builder) throws IOException {
+        Path obj = Path.of(objPath);
+        Path cache = Path.of(objPath + ".bvh");
+        byte[] hash = hash(obj);
+
+        if (Files.isRegularFile(cache)) {
+            try {
+                LinearBvh bvh = read(cache, hash, builder);
+                if (bvh != null) return bvh;
+            } catch (IOException | RuntimeException e) {
+                // a truncated or damaged cache is just a miss
+                System.err.println("could not read " + cache + ": " + e);
+            }
+        }
+
+        if (model == null) model = ObjModel.load(objPath);
+        LinearBvh bvh = builder.build(model.toTriangleSoup(), model.getTriangleCount());
+        try {
+            write(cache, hash, builder, bvh);
+        } catch (IOException e) {
+            // a read-only asset directory just means rebuilding next time
+            System.err.println("could not write " + cache + ": " + e);
+        }
+        return bvh;
+    }
+
+    static LinearBvh read(Path cache, byte[] hash, BvhBuilder builder) throws IOException {
+        try (FileChannel ch = FileChannel.open(cache, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER) return null;
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) return null;
+            byte[] stored = new byte[32];
+            map.get(8, stored);
+            if (!Arrays.equals(stored, hash)) return null;
+            if (map.getInt(40) != builder.split.ordinal()
+                || map.getInt(44) != builder.maxLeafSize
+                || map.getInt(48) != builder.bins
+                || map.getDouble(56) != builder.traversalCost
+                || map.getDouble(64) != builder.intersectionCost) {
+                return null;
+            }
+
+            int nodeCount = map.getInt(72), triCount = map.getInt(76), depth = map.getInt(80);
+            double expectedCost = map.getDouble(88);
+            if (nodeCount < 0 || triCount < 0) return null;
+            long size = HEADER + (nodeCount * 6L + triCount * 9L) * 8 + nodeCount * 2L * 4;
+            if (ch.size() != size) return null;
+
+            double[] bounds = new double[Math.multiplyExact(nodeCount, 6)];
+            double[] tris = new double[Math.multiplyExact(triCount, 9)];
+            int[] nodes = new int[Math.multiplyExact(nodeCount, 2)];
+            long at = HEADER;
+            readDoubles(ch, at, bounds);
+            at += bounds.length * 8L;
+            readDoubles(ch, at, tris);
+            at += tris.length * 8L;
+            readInts(ch, at, nodes);
+            return new LinearBvh(bounds, nodes, tris, nodeCount, triCount, depth, expectedCost);
+        }
+    }
+
+    static void write(Path cache, byte[] hash, BvhBuilder builder, LinearBvh bvh) throws IOException {
+        Path tmp = cache.resolveSibling(cache.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            map.putInt(0, MAGIC);
+            map.putInt(4, VERSION);
+            map.put(8, hash);
+            map.putInt(40, builder.split.ordinal());
+            map.putInt(44, builder.maxLeafSize);
+            map.putInt(48, builder.bins);
+            map.putDouble(56, builder.traversalCost);
+            map.putDouble(64, builder.intersectionCost);
+            map.putInt(72, bvh.nodeCount);
+            map.putInt(76, bvh.triCount);
+            map.putInt(80, bvh.depth);
+            map.putDouble(88, bvh.expectedCost);
+            long at = HEADER;
+            writeDoubles(ch, at, bvh.bounds);
+            at += bvh.bounds.length * 8L;
+            writeDoubles(ch, at, bvh.tris);
+            at += bvh.tris.length * 8L;
+            writeInts(ch, at, bvh.nodes);
+            ch.force(true);
+        }
+        Files.move(tmp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // The arrays go through the file a mapped section at a time, as one
+    // mapping can't pass 2 GB and a large track's triangles can.
+    private static void readDoubles(FileChannel ch, long at, double[] out) throws IOException {
+        for (int i = 0; i < out.length; ) {
+            int n = Math.min(out.length - i, SECTION / 8);
+            ch.map(FileChannel.MapMode.READ_ONLY, at + i * 8L, n * 8L).order(ByteOrder.LITTLE_ENDIAN)
+                .asDoubleBuffer().get(out, i, n);
+            i += n;
+        }
+    }
+
+    private static void readInts(FileChannel ch, long at, int[] out) throws IOException {
+        for (int i = 0; i < out.length; ) {
+            int n = Math.min(out.length - i, SECTION / 4);
+            ch.map(FileChannel.MapMode.READ_ONLY, at + i * 4L, n * 4L).order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer().get(out, i, n);
+            i += n;
+        }
+    }
+
+    private static void writeDoubles(FileChannel ch, long at, double[] in) throws IOException {
+        for (int i = 0; i < in.length; ) {
+            int n = Math.min(in.length - i, SECTION / 8);
+            ch.map(FileChannel.MapMode.READ_WRITE, at + i * 8L, n * 8L).order(ByteOrder.LITTLE_ENDIAN)
+                .asDoubleBuffer().put(in, i, n);
+            i += n;
+        }
+    }
+
+    private static void writeInts(FileChannel ch, long at, int[] in) throws IOException {
+        for (int i = 0; i < in.length; ) {
+            int n = Math.min(in.length - i, SECTION / 4);
+            ch.map(FileChannel.MapMode.READ_WRITE, at + i * 4L, n * 4L).order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer().put(in, i, n);
+            i += n;
+        }
+    }
+
+    static byte[] hash(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            for (long at = 0; at < ch.size(); at += SECTION) {
+                sha.update(ch.map(FileChannel.MapMode.READ_ONLY, at, Math.min(SECTION, ch.size() - at)));
+            }
+            return sha.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
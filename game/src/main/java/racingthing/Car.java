@@ -0,0 +1,479 @@
+package racingthing;
+
+import javafx.geometry.Point3D;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class Car {
+    private final ParticleSystem particles = new ParticleSystem();
+    private final CollisionSphere[] chassisCollision;
+    private final CollisionMesh collisionMesh;
+    private final List<Stick> sticks = new ArrayList<>();
+    private final Point3D startPos;
+    private final String collisionDataPath;
+
+    // push on every particle per tick on top of gravity, set by the player;
+    // the only outside influence on the car, so it's all a Recorder keeps
+    // between keyframes
+    private final double[] input = new double[3];
+
+    // stick solve limits: sweeps per tick, and the largest stick length
+    // error, in track units, at which a sweep counts as converged
+    int maxStickIterations = 200;
+    double stickTolerance = 1e-4;
+    // XPBD compliance of every chassis stick, already divided by dt^2;
+    // 0 keeps them rigid
+    double stickCompliance = 0;
+    private int stickIterations;
+
+    // swept sphere test against the track before the discrete one, so
+    // large steps can't tunnel through thin geometry
+    boolean continuousCollision = true;
+    private int sweepHits;
+    // particle bounds scratch for picking the track tiles to collide with
+    private final double[] tileBox = new double[6];
+
+    // Raycast wheels, null when the chassis spheres ride on the track
+    // instead: 4 per wheel, mount x y z around the body center and radius.
+    // With wheels the spheres skip the track and only meet other cars; the
+    // body is held up by one ray per wheel down from its mount.
+    private final double[] wheels;
+    private final String wheelDataPath;
+    // per wheel: travel below the mount, then spring and damper as the
+    // acceleration they give the whole body per unit of compression and
+    // per unit of its change in a tick; grip is the share of the body's
+    // sideways speed over the ground all wheels together take out a tick
+    double suspensionTravel = 0.3, suspensionStiffness = 0.00025, suspensionDamping = 0.008;
+    double grip = 0.5;
+    private final double[] wheelRays, wheelHits, compression;
+    // the particle nearest each mount, whose velocity stands in for the
+    // body's at the wheel
+    private final int[] anchor;
+    private final RayCast wheelCast = new RayCast();
+    private int wheelContacts;
+    private final double[] quat = new double[4], center = new double[3];
+
+    // Rest detection: once the mean kinetic energy per particle, in track
+    // units per tick squared, has stayed under sleepEnergy for sleepTicks
+    // ticks in a row with no input pushing the car, it stops dead and goes
+    // to sleep. Asleep it skips its whole tick until wake(): a change of
+    // input, or World seeing another car touch it. sleepTicks 0 never sleeps.
+    double sleepEnergy = 5e-8;
+    int sleepTicks = 60;
+    private int restTicks;
+    private boolean asleep;
+    private double energy;
+
+    private final double[] restOffsets;
+    private final RigidFit bodyFit = new RigidFit();
+    private final Metrics metrics = new Metrics();
+
+    public Car(Point3D startPos,
+               CollisionMesh collisionMesh,
+               String collisionDataPath) throws IOException {
+        this(startPos, collisionMesh, collisionDataPath, null);
+    }
+
+    // wheelDataPath lists the wheels as v x y z radius lines, null for none
+    public Car(Point3D startPos,
+               CollisionMesh collisionMesh,
+               String collisionDataPath,
+               String wheelDataPath) throws IOException {
+        this.collisionMesh = collisionMesh;
+        this.startPos = startPos;
+        this.collisionDataPath = collisionDataPath;
+        this.wheelDataPath = wheelDataPath;
+        if (wheelDataPath != null && collisionMesh.getBvh() == null) {
+            throw new IllegalArgumentException("raycast wheels need the full LinearBvh, not a compact or tiled track");
+        }
+
+        // v x y z radius, c index index; same axis flip as the chassis OBJ
+        List<double[]> vertexData = new ArrayList<>();
+        List<int[]> connections = new ArrayList<>();
+        ObjReader in = ObjReader.open(collisionDataPath);
+        while (in.nextLine()) {
+            if (in.keyword("v")) {
+                double x = in.readDouble(), y = in.readDouble(), z = in.readDouble();
+                vertexData.add(new double[]{ -x, -z, y, in.readDouble() });
+            } else if (in.keyword("c")) {
+                connections.add(new int[]{ in.readInt(), in.readInt() });
+            }
+            in.skipLine();
+        }
+
+
+        List<CollisionSphere> spheres = new ArrayList<>();
+        Point3D sum = new Point3D(0,0,0);
+        for (double[] v : vertexData) {
+            CollisionSphere cs = new CollisionSphere(
+                particles, startPos.add(new Point3D(v[0], v[1], v[2])), v[3]
+            );
+            spheres.add(cs);
+            sum = sum.add(cs.getPos());
+        }
+        Point3D initialCenter = sum.multiply(1.0 / spheres.size());
+
+        restOffsets = new double[spheres.size() * 3];
+        for (int i = 0; i < spheres.size(); i++) {
+            Point3D o = spheres.get(i).getPos().subtract(initialCenter);
+            restOffsets[i * 3] = o.getX();
+            restOffsets[i * 3 + 1] = o.getY();
+            restOffsets[i * 3 + 2] = o.getZ();
+        }
+
+        chassisCollision = spheres.toArray(new CollisionSphere[0]);
+
+
+        for (int[] c : connections) {
+            sticks.add(new Stick(
+                particles, spheres.get(c[0]), spheres.get(c[1]), stickCompliance
+            ));
+        }
+
+        if (wheelDataPath == null) {
+            wheels = null;
+            wheelRays = wheelHits = compression = null;
+            anchor = null;
+        } else {
+            List<double[]> wheelData = new ArrayList<>();
+            ObjReader wheelIn = ObjReader.open(wheelDataPath);
+            while (wheelIn.nextLine()) {
+                if (wheelIn.keyword("v")) {
+                    double x = wheelIn.readDouble(), y = wheelIn.readDouble(), z = wheelIn.readDouble();
+                    Point3D m = startPos.add(new Point3D(-x, -z, y)).subtract(initialCenter);
+                    wheelData.add(new double[]{ m.getX(), m.getY(), m.getZ(), wheelIn.readDouble() });
+                }
+                wheelIn.skipLine();
+            }
+            wheels = new double[wheelData.size() * 4];
+            anchor = new int[wheelData.size()];
+            for (int w = 0; w < wheelData.size(); w++) {
+                double[] m = wheelData.get(w);
+                System.arraycopy(m, 0, wheels, w * 4, 4);
+                double nearest = Double.POSITIVE_INFINITY;
+                for (int i = 0; i < spheres.size(); i++) {
+                    double dx = restOffsets[i * 3] - m[0], dy = restOffsets[i * 3 + 1] - m[1];
+                    double dz = restOffsets[i * 3 + 2] - m[2];
+                    double d = dx * dx + dy * dy + dz * dz;
+                    if (d < nearest) {
+                        nearest = d;
+                        anchor[w] = spheres.get(i).index;
+                    }
+                }
+            }
+            wheelRays = new double[wheelData.size() * RayCast.RAY];
+            wheelHits = new double[wheelData.size() * RayCast.HIT];
+            for (int w = 0; w < wheelData.size(); w++) wheelHits[w * RayCast.HIT] = Double.POSITIVE_INFINITY;
+            compression = new double[wheelData.size()];
+        }
+        // so the pose, and the first wheel rays, are right before any tick
+        bodyFit.fit(restOffsets, particles.pos, particles.count);
+    }
+
+    public void update() {
+        if (wheels != null && !asleep) castWheels();
+        integrate();
+        solve();
+    }
+
+    // first half of a tick: gravity, the wheels, verlet and the track
+    void integrate() {
+        if (asleep) return;
+        long t = Metrics.now();
+        particles.applyForce(input[0], 0.0001 + input[1], input[2]);
+        if (wheels != null) suspend();
+        particles.verlet();
+        t = metrics.lap(Metrics.Phase.INTEGRATE, t);
+        if (wheels != null) return;
+
+        long nodes = particles.nodeVisits, tests = particles.triangleTests, contacts = particles.trackContacts;
+        if (collisionMesh.isTiled()) {
+            sweepHits = 0;
+            collisionMesh.getTiles().collide(particles, tileBox);
+        } else if (collisionMesh.isCompact()) {
+            sweepHits = 0;
+            particles.collide(collisionMesh.getCompactBvh());
+        } else {
+            sweepHits = continuousCollision ? particles.sweep(collisionMesh.getBvh()) : 0;
+            particles.collide(collisionMesh.getBvh());
+        }
+        metrics.lap(Metrics.Phase.COLLIDE, t);
+        if (Metrics.ENABLED) {
+            metrics.count(Metrics.Counter.NODES_VISITED, particles.nodeVisits - nodes);
+            metrics.count(Metrics.Counter.TRIANGLES_TESTED, particles.triangleTests - tests);
+            metrics.count(Metrics.Counter.CONTACTS, particles.trackContacts - contacts);
+        }
+    }
+
+    // second half, after any car vs car pushes: sticks and the body fit
+    void solve() {
+        if (asleep) return;
+        long t = Metrics.now();
+        solveConstraints();
+        t = metrics.lap(Metrics.Phase.STICKS, t);
+        metrics.count(Metrics.Counter.SOLVER_ITERATIONS, stickIterations);
+        bodyFit.fit(restOffsets, particles.pos, particles.count);
+        metrics.lap(Metrics.Phase.FIT, t);
+        rest();
+    }
+
+    private void rest() {
+        double[] pos = particles.pos, prev = particles.prev;
+        int n = particles.count;
+        double sum = 0;
+        for (int i = 0; i < n * 3; i++) {
+            double v = pos[i] - prev[i];
+            sum += v * v;
+        }
+        energy = sum / (2 * n);
+        if (energy >= sleepEnergy || input[0] != 0 || input[1] != 0 || input[2] != 0) {
+            restTicks = 0;
+        } else if (++restTicks >= sleepTicks && sleepTicks > 0) {
+            System.arraycopy(pos, 0, prev, 0, n * 3);
+            asleep = true;
+        }
+    }
+
+    public void wake() {
+        if (!asleep) return;
+        asleep = false;
+        restTicks = 0;
+    }
+
+    public boolean isAsleep() {
+        return asleep;
+    }
+
+    // asleep, or slow enough for it on the last tick with no input
+    public boolean isResting() {
+        return asleep || energy < sleepEnergy && input[0] == 0 && input[1] == 0 && input[2] == 0;
+    }
+
+    // mean kinetic energy per particle after the last tick it ran
+    public double getEnergy() {
+        return energy;
+    }
+
+    // Writes one ray per wheel to out at o, RayCast.RAY each, and returns
+    // how many: straight down the body as it was at the end of the last
+    // tick, from a radius above the mount to the travel plus a radius below.
+    // The nearest hits go back in through setWheelHits() before integrate().
+    public int getWheelRays(double[] out, int o) {
+        if (wheels == null || asleep) return 0;
+        bodyFit.getQuaternion(quat);
+        bodyFit.getTranslation(center);
+        double dx = rotateX(quat, 0, 1, 0), dy = rotateY(quat, 0, 1, 0), dz = rotateZ(quat, 0, 1, 0);
+        for (int w = 0; w < anchor.length; w++) {
+            double mx = wheels[w * 4], my = wheels[w * 4 + 1], mz = wheels[w * 4 + 2], r = wheels[w * 4 + 3];
+            int k = w * RayCast.RAY;
+            wheelRays[k] = center[0] + rotateX(quat, mx, my, mz) - dx * r;
+            wheelRays[k + 1] = center[1] + rotateY(quat, mx, my, mz) - dy * r;
+            wheelRays[k + 2] = center[2] + rotateZ(quat, mx, my, mz) - dz * r;
+            wheelRays[k + 3] = dx;
+            wheelRays[k + 4] = dy;
+            wheelRays[k + 5] = dz;
+            wheelRays[k + 6] = suspensionTravel + 2 * r;
+        }
+        System.arraycopy(wheelRays, 0, out, o, wheelRays.length);
+        return anchor.length;
+    }
+
+    public void setWheelHits(double[] hits, int o) {
+        if (wheels != null && !asleep) System.arraycopy(hits, o, wheelHits, 0, wheelHits.length);
+    }
+
+    // casts its own wheel rays, for a car stepped outside a World
+    void castWheels() {
+        long t = Metrics.now();
+        long nodes = wheelCast.nodeVisits, tests = wheelCast.triangleTests;
+        getWheelRays(wheelRays, 0);
+        wheelCast.castAll(collisionMesh.getBvh(), wheelRays, anchor.length, wheelHits);
+        metrics.lap(Metrics.Phase.COLLIDE, t);
+        if (Metrics.ENABLED) {
+            metrics.count(Metrics.Counter.NODES_VISITED, wheelCast.nodeVisits - nodes);
+            metrics.count(Metrics.Counter.TRIANGLES_TESTED, wheelCast.triangleTests - tests);
+        }
+    }
+
+    // Spring, damper and sideways grip of every wheel on the ground, summed
+    // into one change of the body's velocity and spin and applied to every
+    // particle as a rigid motion, so the sticks see no strain from it.
+    // Particles weigh 1 each, like gravity treats them.
+    private void suspend() {
+        double[] pos = particles.pos, prev = particles.prev;
+        int n = particles.count;
+        double cx = 0, cy = 0, cz = 0;
+        for (int i = 0; i < n; i++) {
+            cx += pos[i * 3];
+            cy += pos[i * 3 + 1];
+            cz += pos[i * 3 + 2];
+        }
+        cx /= n;
+        cy /= n;
+        cz /= n;
+        double ixx = 0, iyy = 0, izz = 0, ixy = 0, ixz = 0, iyz = 0;
+        for (int i = 0; i < n; i++) {
+            double rx = pos[i * 3] - cx, ry = pos[i * 3 + 1] - cy, rz = pos[i * 3 + 2] - cz;
+            ixx += ry * ry + rz * rz;
+            iyy += rx * rx + rz * rz;
+            izz += rx * rx + ry * ry;
+            ixy -= rx * ry;
+            ixz -= rx * rz;
+            iyz -= ry * rz;
+        }
+        // inverse inertia, symmetric, by cofactors
+        double axx = iyy * izz - iyz * iyz, axy = ixz * iyz - ixy * izz, axz = ixy * iyz - ixz * iyy;
+        double det = ixx * axx + ixy * axy + ixz * axz;
+        axx /= det;
+        axy /= det;
+        axz /= det;
+        double ayy = (ixx * izz - ixz * ixz) / det, ayz = (ixy * ixz - ixx * iyz) / det;
+        double azz = (ixx * iyy - ixy * ixy) / det;
+
+        double sideX = rotateX(quat, 0, 0, 1), sideY = rotateY(quat, 0, 0, 1), sideZ = rotateZ(quat, 0, 0, 1);
+        double vx = 0, vy = 0, vz = 0, wx = 0, wy = 0, wz = 0;
+        wheelContacts = 0;
+        for (int w = 0; w < anchor.length; w++) {
+            int k = w * RayCast.RAY, h = w * RayCast.HIT;
+            double t = wheelHits[h];
+            if (t == Double.POSITIVE_INFINITY) {
+                compression[w] = 0;
+                continue;
+            }
+            wheelContacts++;
+            double c = wheelRays[k + 6] - t;
+            double push = Math.max(0, suspensionStiffness * c + suspensionDamping * (c - compression[w])) * n;
+            compression[w] = c;
+            double jx = -wheelRays[k + 3] * push, jy = -wheelRays[k + 4] * push, jz = -wheelRays[k + 5] * push;
+
+            // the body's side axis laid on the ground, and the anchor's
+            // speed along it brought down by this wheel's share of grip
+            double nx = wheelHits[h + 1], ny = wheelHits[h + 2], nz = wheelHits[h + 3];
+            double along = sideX * nx + sideY * ny + sideZ * nz;
+            double sx = sideX - nx * along, sy = sideY - ny * along, sz = sideZ - nz * along;
+            double len = Math.sqrt(sx * sx + sy * sy + sz * sz);
+            double px = wheelRays[k] + wheelRays[k + 3] * t - cx;
+            double py = wheelRays[k + 1] + wheelRays[k + 4] * t - cy;
+            double pz = wheelRays[k + 2] + wheelRays[k + 5] * t - cz;
+            if (len > 1e-9) {
+                sx /= len;
+                sy /= len;
+                sz /= len;
+                int a = anchor[w] * 3;
+                double slide = (pos[a] - prev[a]) * sx + (pos[a + 1] - prev[a + 1]) * sy
+                    + (pos[a + 2] - prev[a + 2]) * sz;
+                // mass the body puts up against a push along s at p
+                double kx = py * sz - pz * sy, ky = pz * sx - px * sz, kz = px * sy - py * sx;
+                double turn = kx * (axx * kx + axy * ky + axz * kz) + ky * (axy * kx + ayy * ky + ayz * kz)
+                    + kz * (axz * kx + ayz * ky + azz * kz);
+                double j = -grip / anchor.length * slide / (1.0 / n + turn);
+                jx += sx * j;
+                jy += sy * j;
+                jz += sz * j;
+            }
+
+            vx += jx / n;
+            vy += jy / n;
+            vz += jz / n;
+            double tx = py * jz - pz * jy, ty = pz * jx - px * jz, tz = px * jy - py * jx;
+            wx += axx * tx + axy * ty + axz * tz;
+            wy += axy * tx + ayy * ty + ayz * tz;
+            wz += axz * tx + ayz * ty + azz * tz;
+        }
+        if (wheelContacts == 0) return;
+        for (int i = 0; i < n; i++) {
+            int o = i * 3;
+            double rx = pos[o] - cx, ry = pos[o + 1] - cy, rz = pos[o + 2] - cz;
+            pos[o] += vx + wy * rz - wz * ry;
+            pos[o + 1] += vy + wz * rx - wx * rz;
+            pos[o + 2] += vz + wx * ry - wy * rx;
+        }
+    }
+
+    // q = w x y z applied to x y z, one component each
+    private static double rotateX(double[] q, double x, double y, double z) {
+        return (1 - 2 * (q[2] * q[2] + q[3] * q[3])) * x + 2 * (q[1] * q[2] - q[0] * q[3]) * y
+            + 2 * (q[1] * q[3] + q[0] * q[2]) * z;
+    }
+
+    private static double rotateY(double[] q, double x, double y, double z) {
+        return 2 * (q[1] * q[2] + q[0] * q[3]) * x + (1 - 2 * (q[1] * q[1] + q[3] * q[3])) * y
+            + 2 * (q[2] * q[3] - q[0] * q[1]) * z;
+    }
+
+    private static double rotateZ(double[] q, double x, double y, double z) {
+        return 2 * (q[1] * q[3] - q[0] * q[2]) * x + 2 * (q[2] * q[3] + q[0] * q[1]) * y
+            + (1 - 2 * (q[1] * q[1] + q[2] * q[2])) * z;
+    }
+
+    void solveConstraints() {
+        Arrays.fill(particles.compliance, 0, particles.stickCount, stickCompliance);
+        stickIterations = particles.solveSticks(maxStickIterations, stickTolerance);
+    }
+
+    public void setInput(double x, double y, double z) {
+        if (x != input[0] || y != input[1] || z != input[2]) wake();
+        input[0] = x;
+        input[1] = y;
+        input[2] = z;
+    }
+
+    public double[] getInput(double[] out, int o) {
+        System.arraycopy(input, 0, out, o, 3);
+        return out;
+    }
+
+    public Point3D getStartPos() {
+        return startPos;
+    }
+
+    public String getCollisionDataPath() {
+        return collisionDataPath;
+    }
+
+    // null for a car on its chassis spheres
+    public String getWheelDataPath() {
+        return wheelDataPath;
+    }
+
+    public int getWheelCount() {
+        return wheels == null ? 0 : anchor.length;
+    }
+
+    // wheels on the ground in the last tick
+    public int getWheelContacts() {
+        return wheelContacts;
+    }
+
+    public ParticleSystem getParticles() {
+        return particles;
+    }
+
+    public CollisionSphere[] getChassisCollision() {
+        return chassisCollision;
+    }
+
+    public CollisionMesh getCollisionMesh() {
+        return collisionMesh;
+    }
+
+    // sweeps the stick solver needed on the last tick
+    public int getStickIterations() {
+        return stickIterations;
+    }
+
+    // spheres stopped by the swept test on the last tick
+    public int getSweepHits() {
+        return sweepHits;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public RigidFit getBodyFit() {
+        return bodyFit;
+    }
+}
@@ -0,0 +1,62 @@
+package racingthing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javafx.scene.Group;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.Sphere;
+import javafx.scene.transform.Affine;
+
+public class CarView {
+    private final int carIndex;
+    private final Mesh chassisMesh;
+    private final List<Sphere> sphereViews = new ArrayList<>();
+    private final int[] particleIndex;
+    // the only transform on the chassis, rewritten in place every frame
+    private final Affine pose = new Affine();
+    private final double[] state = new double[7], sphere = new double[3];
+
+    public CarView(Car car,
+                   int carIndex,
+                   String chassisObjPath,
+                   String wheelObjPath,
+                   Group world) throws IOException {
+        this.carIndex = carIndex;
+        chassisMesh = new Mesh(chassisObjPath);
+        chassisMesh.getTransforms().add(pose);
+        world.getChildren().add(chassisMesh);
+
+        CollisionSphere[] spheres = car.getChassisCollision();
+        particleIndex = new int[spheres.length];
+        for (int i = 0; i < spheres.length; i++) particleIndex[i] = spheres[i].index;
+        for (CollisionSphere cs : spheres) {
+            Sphere view = new Sphere(cs.radius);
+            PhongMaterial mat = new PhongMaterial(Color.RED);
+            mat.setSpecularColor(Color.ORANGE);
+            view.setMaterial(mat);
+            world.getChildren().add(view);
+            sphereViews.add(view);
+        }
+    }
+
+    // rotation about the body center then the center itself, x' = R x + c
+    public void sync(WorldSnapshot snapshot, double alpha) {
+        snapshot.getPose(carIndex, alpha, state);
+        double w = state[0], x = state[1], y = state[2], z = state[3];
+        pose.setToTransform(
+            1 - 2 * (y * y + z * z), 2 * (x * y - w * z), 2 * (x * z + w * y), state[4],
+            2 * (x * y + w * z), 1 - 2 * (x * x + z * z), 2 * (y * z - w * x), state[5],
+            2 * (x * z - w * y), 2 * (y * z + w * x), 1 - 2 * (x * x + y * y), state[6]
+        );
+
+        for (int i = 0; i < sphereViews.size(); i++) {
+            Sphere v = sphereViews.get(i);
+            snapshot.getSphere(carIndex, particleIndex[i], alpha, sphere);
+            v.setTranslateX(sphere[0]);
+            v.setTranslateY(sphere[1]);
+            v.setTranslateZ(sphere[2]);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package racingthing;
+
+import java.io.IOException;
+
+// The track as cars collide with it: either the full LinearBvh, only its
+// QuantizedBvh once compact() has dropped the doubles, or TrackTiles
+// streamed in around the cars. The last two have no getBvh(), so no ray
+// casts, sweeps or contact caches against them.
+public class CollisionMesh {
+    private final LinearBvh bvh;
+    private final QuantizedBvh compactBvh;
+    private final TrackTiles tiles;
+
+    public CollisionMesh(String objPath, int maxLeafSize) throws IOException {
+        this(ObjModel.load(objPath), new BvhBuilder(BvhBuilder.Split.SAH, maxLeafSize));
+    }
+
+    public CollisionMesh(String objPath, BvhBuilder builder) throws IOException {
+        this(ObjModel.load(objPath), builder);
+    }
+
+    public CollisionMesh(ObjModel model, BvhBuilder builder) {
+        this(builder.build(model.toTriangleSoup(), model.getTriangleCount()));
+    }
+
+    public CollisionMesh(LinearBvh bvh) {
+        this.bvh = bvh;
+        this.compactBvh = null;
+        this.tiles = null;
+    }
+
+    public CollisionMesh(QuantizedBvh compactBvh) {
+        this.bvh = null;
+        this.compactBvh = compactBvh;
+        this.tiles = null;
+    }
+
+    public CollisionMesh(TrackTiles tiles) {
+        this.bvh = null;
+        this.compactBvh = null;
+        this.tiles = tiles;
+    }
+
+    // the same track packed into a QuantizedBvh, without the LinearBvh
+    public CollisionMesh compact() {
+        if (bvh == null) throw new IllegalStateException("only a full LinearBvh can be compacted");
+        return new CollisionMesh(new QuantizedBvh(bvh));
+    }
+
+    // goes through the baked <obj>.tiles, baking it on a miss
+    public static CollisionMesh tiled(String objPath, BvhBuilder builder, double tileSize) throws IOException {
+        return new CollisionMesh(TrackTiles.load(objPath, builder, tileSize));
+    }
+
+    // the same, baking from an already parsed model on a miss
+    public static CollisionMesh tiled(String objPath, ObjModel model, BvhBuilder builder, double tileSize)
+            throws IOException {
+        return new CollisionMesh(TrackTiles.load(objPath, model, builder, tileSize));
+    }
+
+    public boolean isCompact() {
+        return compactBvh != null;
+    }
+
+    public boolean isTiled() {
+        return tiles != null;
+    }
+
+    // goes through the baked <obj>.bvh, building and writing it on a miss
+    public static CollisionMesh load(String objPath, BvhBuilder builder) throws IOException {
+        return new CollisionMesh(BvhCache.load(objPath, builder));
+    }
+
+    // the same, building from an already parsed model on a miss
+    public static CollisionMesh load(String objPath, ObjModel model, BvhBuilder builder) throws IOException {
+        return new CollisionMesh(BvhCache.load(objPath, model, builder));
+    }
+
+    static double[] loadTriangles(String objPath) throws IOException {
+        return ObjModel.load(objPath).toTriangleSoup();
+    }
+
+    // null for a compact mesh
+    public LinearBvh getBvh() {
+        return bvh;
+    }
+
+    // null unless compact
+    public QuantizedBvh getCompactBvh() {
+        return compactBvh;
+    }
+
+    // null unless tiled
+    public TrackTiles getTiles() {
+        return tiles;
+    }
+
+    public int getTriangleCount() {
+        if (tiles != null) return tiles.getTriangleCount();
+        return compactBvh != null ? compactBvh.getTriangleCount() : bvh.getTriangleCount();
+    }
+
+    // for a tiled track, only the tiles resident right now
+    public long getBytes() {
+        if (tiles != null) return tiles.getResidentBytes();
+        return compactBvh != null ? compactBvh.getBytes() : bvh.getBytes();
+    }
+}
@@ -0,0 +1,180 @@
+package racingthing;
+
+import javafx.geometry.Point3D;
+
+public class CollisionSphere {
+    private final ParticleSystem system;
+    final int index;
+    public final double radius;
+
+    public CollisionSphere(ParticleSystem system, Point3D initialPos, double radius) {
+        this.system = system;
+        this.index = system.addParticle(initialPos.getX(), initialPos.getY(), initialPos.getZ(), radius);
+        this.radius = radius;
+    }
+
+    public Point3D getPos() {
+        return new Point3D(system.getX(index), system.getY(index), system.getZ(index));
+    }
+
+    public void applyForce(Point3D force) {
+        system.applyForce(index, force.getX(), force.getY(), force.getZ());
+    }
+
+    public void verlet() {
+        system.verlet(index);
+    }
+
+    void collideMeshBVH(LinearBvh bvh) {
+        system.collide(index, bvh);
+    }
+
+    static void closestPointOnTriangle(double px, double py, double pz, double[] tri, int o, double[] out) {
+        double ax = tri[o], ay = tri[o + 1], az = tri[o + 2];
+        double bx = tri[o + 3], by = tri[o + 4], bz = tri[o + 5];
+        double cx = tri[o + 6], cy = tri[o + 7], cz = tri[o + 8];
+        double abx = bx - ax, aby = by - ay, abz = bz - az;
+        double acx = cx - ax, acy = cy - ay, acz = cz - az;
+        double apx = px - ax, apy = py - ay, apz = pz - az;
+        double d1 = abx * apx + aby * apy + abz * apz, d2 = acx * apx + acy * apy + acz * apz;
+        if (d1 <= 0 && d2 <= 0) {
+            out[0] = ax; out[1] = ay; out[2] = az;
+            return;
+        }
+        double bpx = px - bx, bpy = py - by, bpz = pz - bz;
+        double d3 = abx * bpx + aby * bpy + abz * bpz, d4 = acx * bpx + acy * bpy + acz * bpz;
+        if (d3 >= 0 && d4 <= d3) {
+            out[0] = bx; out[1] = by; out[2] = bz;
+            return;
+        }
+        double vc = d1 * d4 - d3 * d2;
+        if (vc <= 0 && d1 >= 0 && d3 <= 0) {
+            double v = d1 / (d1 - d3);
+            out[0] = ax + abx * v; out[1] = ay + aby * v; out[2] = az + abz * v;
+            return;
+        }
+        double cpx = px - cx, cpy = py - cy, cpz = pz - cz;
+        double d5 = abx * cpx + aby * cpy + abz * cpz, d6 = acx * cpx + acy * cpy + acz * cpz;
+        if (d6 >= 0 && d5 <= d6) {
+            out[0] = cx; out[1] = cy; out[2] = cz;
+            return;
+        }
+        double vb = d5 * d2 - d1 * d6;
+        if (vb <= 0 && d2 >= 0 && d6 <= 0) {
+            double w = d2 / (d2 - d6);
+            out[0] = ax + acx * w; out[1] = ay + acy * w; out[2] = az + acz * w;
+            return;
+        }
+        double va = d3 * d6 - d5 * d4;
+        if (va <= 0 && (d4 - d3) >= 0 && (d5 - d6) >= 0) {
+            double w = (d4 - d3) / ((d4 - d3) + (d5 - d6));
+            out[0] = bx + (cx - bx) * w; out[1] = by + (cy - by) * w; out[2] = bz + (cz - bz) * w;
+            return;
+        }
+        double denom = 1.0 / (va + vb + vc);
+        double v = vb * denom, w = vc * denom;
+        out[0] = ax + abx * v + acx * w;
+        out[1] = ay + aby * v + acy * w;
+        out[2] = az + abz * v + acz * w;
+    }
+
+    // Time of first contact, in [0, tMax), of a sphere of radius r moving from
+    // p by d against the triangle at tri[o], or +inf if it doesn't touch it
+    // sooner. Tried as the face first, then as the three edge capsules and the
+    // three corner spheres. Starting positions that already overlap a feature
+    // are left to the discrete pass. On a hit out holds the unit contact
+    // normal, pointing from the triangle to the sphere.
+    static double sweepSphereTriangle(double px, double py, double pz, double dx, double dy, double dz,
+                                      double r, double[] tri, int o, double tMax, double[] out) {
+        double ax = tri[o], ay = tri[o + 1], az = tri[o + 2];
+        double e1x = tri[o + 3] - ax, e1y = tri[o + 4] - ay, e1z = tri[o + 5] - az;
+        double e2x = tri[o + 6] - ax, e2y = tri[o + 7] - ay, e2z = tri[o + 8] - az;
+        double nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+        double nl = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (nl == 0) return Double.POSITIVE_INFINITY;
+        nx /= nl;
+        ny /= nl;
+        nz /= nl;
+        double d0 = (px - ax) * nx + (py - ay) * ny + (pz - az) * nz;
+        double dn = dx * nx + dy * ny + dz * nz;
+        if (d0 < 0) {
+            nx = -nx; ny = -ny; nz = -nz;
+            d0 = -d0;
+            dn = -dn;
+        }
+
+        if (d0 >= r && dn < 0) {
+            double t = (d0 - r) / -dn;
+            if (t >= tMax) return Double.POSITIVE_INFINITY;
+            double cx = px + dx * t - nx * r, cy = py + dy * t - ny * r, cz = pz + dz * t - nz * r;
+            if (insideTriangle(cx, cy, cz, tri, o, nx, ny, nz)) {
+                out[0] = nx; out[1] = ny; out[2] = nz;
+                return t;
+            }
+        } else if (d0 < r && insideTriangle(px - nx * d0, py - ny * d0, pz - nz * d0, tri, o, nx, ny, nz)) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double best = tMax;
+        double dd = dx * dx + dy * dy + dz * dz;
+        for (int k = 0; k < 3; k++) {
+            int a = o + k * 3, b = o + (k + 1) % 3 * 3;
+            double vx = tri[a], vy = tri[a + 1], vz = tri[a + 2];
+            double mx = px - vx, my = py - vy, mz = pz - vz;
+
+            // corner sphere at a
+            double mb = mx * dx + my * dy + mz * dz, mc = mx * mx + my * my + mz * mz - r * r;
+            if (mc >= 0 && mb < 0) {
+                double disc = mb * mb - dd * mc;
+                if (disc >= 0) {
+                    double t = (-mb - Math.sqrt(disc)) / dd;
+                    if (t < best) {
+                        best = t;
+                        out[0] = mx + dx * t; out[1] = my + dy * t; out[2] = mz + dz * t;
+                    }
+                }
+            }
+
+            // edge capsule a -> b, without caps
+            double ex = tri[b] - vx, ey = tri[b + 1] - vy, ez = tri[b + 2] - vz;
+            double ee = ex * ex + ey * ey + ez * ez;
+            double me = mx * ex + my * ey + mz * ez, de = dx * ex + dy * ey + dz * ez;
+            double qa = ee * dd - de * de;
+            double qb = ee * mb - de * me;
+            double qc = ee * mc - me * me;
+            if (qa <= 1e-12 || qc < 0) continue;
+            double disc = qb * qb - qa * qc;
+            if (disc < 0) continue;
+            double t = (-qb - Math.sqrt(disc)) / qa;
+            if (t < 0 || t >= best) continue;
+            double s = me + de * t;
+            if (s < 0 || s > ee) continue;
+            s /= ee;
+            best = t;
+            out[0] = mx + dx * t - ex * s; out[1] = my + dy * t - ey * s; out[2] = mz + dz * t - ez * s;
+        }
+        if (best >= tMax) return Double.POSITIVE_INFINITY;
+        double l = Math.sqrt(out[0] * out[0] + out[1] * out[1] + out[2] * out[2]);
+        out[0] /= l; out[1] /= l; out[2] /= l;
+        return best;
+    }
+
+    // point already on the triangle's plane, n either of its normals
+    private static boolean insideTriangle(double x, double y, double z, double[] tri, int o, double nx, double ny, double nz) {
+        int sign = 0;
+        for (int k = 0; k < 3; k++) {
+            int a = o + k * 3, b = o + (k + 1) % 3 * 3;
+            double ex = tri[b] - tri[a], ey = tri[b + 1] - tri[a + 1], ez = tri[b + 2] - tri[a + 2];
+            double qx = x - tri[a], qy = y - tri[a + 1], qz = z - tri[a + 2];
+            double side = (ey * qz - ez * qy) * nx + (ez * qx - ex * qz) * ny + (ex * qy - ey * qx) * nz;
+            if (side > 0) {
+                if (sign < 0) return false;
+                sign = 1;
+            } else if (side < 0) {
+                if (sign > 0) return false;
+                sign = -1;
+            }
+        }
+        return true;
+    }
+}
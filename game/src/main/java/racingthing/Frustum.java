@@ -0,0 +1,69 @@
+package racingthing;
+
+// View volume of a perspective camera as six inward facing planes, nx ny nz d
+// each; a point p is inside a plane when n.p + d >= 0.
+public class Frustum {
+    final double[] planes = new double[24];
+
+    // eye position, forward and up directions (need not be unit or exactly
+    // orthogonal), vertical field of view in degrees, width / height
+    public void set(double px, double py, double pz,
+                    double fx, double fy, double fz,
+                    double ux, double uy, double uz,
+                    double verticalFov, double aspect, double near, double far) {
+        double fl = Math.sqrt(fx * fx + fy * fy + fz * fz);
+        fx /= fl;
+        fy /= fl;
+        fz /= fl;
+        // right = forward x up, then up again so the basis is orthogonal
+        double rx = fy * uz - fz * uy, ry = fz * ux - fx * uz, rz = fx * uy - fy * ux;
+        double rl = Math.sqrt(rx * rx + ry * ry + rz * rz);
+        rx /= rl;
+        ry /= rl;
+        rz /= rl;
+        ux = ry * fz - rz * fy;
+        uy = rz * fx - rx * fz;
+        uz = rx * fy - ry * fx;
+
+        double tv = Math.tan(Math.toRadians(verticalFov) / 2), th = tv * aspect;
+        plane(0, fx, fy, fz, px + fx * near, py + fy * near, pz + fz * near);
+        plane(1, -fx, -fy, -fz, px + fx * far, py + fy * far, pz + fz * far);
+        // each side plane holds the eye, one basis vector and the edge
+        // direction forward +- tan * the other; its normal is their cross
+        side(2, rx, ry, rz, fx + ux * tv, fy + uy * tv, fz + uz * tv, fx, fy, fz, px, py, pz);
+        side(3, rx, ry, rz, fx - ux * tv, fy - uy * tv, fz - uz * tv, fx, fy, fz, px, py, pz);
+        side(4, ux, uy, uz, fx + rx * th, fy + ry * th, fz + rz * th, fx, fy, fz, px, py, pz);
+        side(5, ux, uy, uz, fx - rx * th, fy - ry * th, fz - rz * th, fx, fy, fz, px, py, pz);
+    }
+
+    private void plane(int i, double nx, double ny, double nz, double x, double y, double z) {
+        planes[i * 4] = nx;
+        planes[i * 4 + 1] = ny;
+        planes[i * 4 + 2] = nz;
+        planes[i * 4 + 3] = -(nx * x + ny * y + nz * z);
+    }
+
+    private void side(int i, double ax, double ay, double az, double ex, double ey, double ez,
+                      double fx, double fy, double fz, double px, double py, double pz) {
+        double nx = ay * ez - az * ey, ny = az * ex - ax * ez, nz = ax * ey - ay * ex;
+        if (nx * fx + ny * fy + nz * fz < 0) {
+            nx = -nx;
+            ny = -ny;
+            nz = -nz;
+        }
+        plane(i, nx, ny, nz, px, py, pz);
+    }
+
+    // false only when the box at box[o] (min xyz, max xyz) is entirely
+    // behind one of the planes; boxes near a corner may pass conservatively
+    public boolean intersects(double[] box, int o) {
+        for (int i = 0; i < 24; i += 4) {
+            double nx = planes[i], ny = planes[i + 1], nz = planes[i + 2];
+            double x = nx >= 0 ? box[o + 3] : box[o];
+            double y = ny >= 0 ? box[o + 4] : box[o + 1];
+            double z = nz >= 0 ? box[o + 5] : box[o + 2];
+            if (nx * x + ny * y + nz * z + planes[i + 3] < 0) return false;
+        }
+        return true;
+    }
+}
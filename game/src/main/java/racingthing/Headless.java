@@ -0,0 +1,96 @@
+package racingthing;
+
+import javafx.geometry.Point3D;
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class Headless {
+    public static void main(String[] args) throws IOException {
+        long ticks = args.length > 0 ? Long.parseLong(args[0]) : 3600;
+        double hz = args.length > 1 ? Double.parseDouble(args[1]) : 60;
+        int carCount = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        String record = System.getProperty("racingthing.record");
+        String wheels = Boolean.getBoolean("racingthing.wheels")
+            ? Assets.resolve("assets/Models/Car/WheelCollision.txt") : null;
+        double tileSize = Double.parseDouble(System.getProperty("racingthing.tiles", "0"));
+
+        long t0 = System.nanoTime();
+        String trackPath = Assets.resolve("assets/Maps/TestMap/TestMap.obj");
+        BvhBuilder builder = new BvhBuilder(BvhBuilder.Split.SAH, 8);
+        CollisionMesh track;
+        long full = 0;
+        if (tileSize > 0) {
+            track = CollisionMesh.tiled(trackPath, builder, tileSize);
+            double budget = Double.parseDouble(System.getProperty("racingthing.tiles.budget", "64"));
+            track.getTiles().setBudget((long) (budget * (1 << 20)));
+            track.getTiles().setMargin(Double.parseDouble(System.getProperty("racingthing.tiles.margin", "16")));
+        } else {
+            track = CollisionMesh.load(trackPath, builder);
+            full = track.getBytes();
+            if (Boolean.getBoolean("racingthing.compact")) track = track.compact();
+        }
+        World world = new World(track);
+        try {
+            for (int i = 0; i < carCount; i++) {
+                world.addCar(
+                    World.gridSlot(new Point3D(0.724999, -4.63841, 95.6295), i),
+                    Assets.resolve("assets/Models/Car/ChassisCollision.txt"),
+                    wheels
+                );
+            }
+        } catch (IllegalArgumentException e) {
+            // a malformed asset, or racingthing.wheels on a compact or tiled track
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+        Car car = world.getCars().get(0);
+        long t1 = System.nanoTime();
+        System.out.printf("loaded %d cars in %.1f ms, %s%n", carCount, (t1 - t0) / 1e6,
+            track.isTiled() ? track.getTiles() : track.isCompact() ? track.getCompactBvh() : track.getBvh());
+        if (!track.isTiled()) {
+            System.out.printf("track collision: %d bytes, %.1f MB per million triangles (%.1f full)%n",
+                track.getBytes(), track.getBytes() / (double) track.getTriangleCount(),
+                full / (double) track.getTriangleCount());
+        }
+
+        Recorder recorder = record == null ? null
+            : new Recorder(Path.of(record), world, trackPath, builder, 1.0 / hz, 60);
+        Simulation sim = new Simulation(recorder == null ? world::step : recorder::step, 1.0 / hz);
+        MetricsReport metrics = world.addMetricsTo(new MetricsReport());
+        metrics.start();
+        sim.run(ticks);
+        if (recorder != null) recorder.close();
+        metrics.stop();
+        long t2 = System.nanoTime();
+
+        double wall = (t2 - t1) / 1e9;
+        double[] c = car.getBodyFit().getTranslation(new double[3]);
+        System.out.printf("%d ticks x %d cars in %.3f s: %.0f ticks/s, %.1fx real time%n",
+            ticks, carCount, wall, ticks / wall, sim.getSimulatedTime() / wall);
+        System.out.printf("%d car pairs in the broad phase, %d sphere contacts between cars%n",
+            world.getBroadPhase().getPairCount(), world.getCarContacts());
+        long hits = 0, misses = 0;
+        for (Car each : world.getCars()) {
+            hits += each.getParticles().getCacheHits();
+            misses += each.getParticles().getCacheMisses();
+        }
+        System.out.printf("track contact cache: %d hits, %d misses (%.1f%%)%n",
+            hits, misses, 100.0 * hits / Math.max(1, hits + misses));
+        System.out.printf("%d cars awake, %d asleep%n", world.getAwakeCars(), world.getSleepingCars());
+        if (track.isTiled()) {
+            TrackTiles tiles = track.getTiles();
+            System.out.printf("tiles: %d of %d resident, %.2f of %.2f MB; %d hits, %d misses, %d stalls, "
+                    + "%d evictions; load %.2f ms mean, %.2f max%n",
+                tiles.getResidentCount(), tiles.getTileCount(), tiles.getResidentBytes() / 1048576.0,
+                tiles.getBudget() / 1048576.0, tiles.getHits(), tiles.getMisses(), tiles.getStalls(),
+                tiles.getEvictions(), tiles.getLoadNanos() / 1e6 / Math.max(1, tiles.getLoads()),
+                tiles.getMaxLoadNanos() / 1e6);
+        }
+        System.out.printf("chassis at %.4f %.4f %.4f%n", c[0], c[1], c[2]);
+        if (recorder != null) {
+            System.out.printf("recorded %d steps to %s: %d bytes, %d ring stalls%n",
+                recorder.getSteps(), record, recorder.getBytes(), recorder.getStalls());
+        }
+    }
+}
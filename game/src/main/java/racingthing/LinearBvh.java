@@ -0,0 +1,114 @@
+package racingthing;
+
+public class LinearBvh {
+    // 6 per node: minX, minY, minZ, maxX, maxY, maxZ
+    final double[] bounds;
+    // 2 per node: leaf -> first triangle, triangle count; inner -> right child, 0
+    // the left child of an inner node always directly follows it
+    final int[] nodes;
+    // 9 per triangle, in leaf order
+    final double[] tris;
+    // the same triangles as nine component arrays of soaStride each (ax, ay,
+    // az, bx, ... cz), padded so SOA_PAD triangles from any index load as one
+    // vector per component; a leaf is one or two TriangleKernel packets.
+    // Only the vector kernel reads them, so without it they're null
+    final double[] soa;
+    final int soaStride;
+    static final int SOA_PAD = 8;
+    final int nodeCount, triCount, depth;
+    // surface area heuristic cost of the whole tree, relative to the root box
+    final double expectedCost;
+
+    LinearBvh(double[] bounds, int[] nodes, double[] tris, int nodeCount, int triCount, int depth, double expectedCost) {
+        this.bounds = bounds;
+        this.nodes = nodes;
+        this.tris = tris;
+        soaStride = triCount + SOA_PAD;
+        soa = TriangleKernel.VECTOR ? new double[9 * soaStride] : null;
+        for (int t = 0; soa != null && t < triCount; t++) {
+            for (int c = 0; c < 9; c++) soa[c * soaStride + t] = tris[t * 9 + c];
+        }
+        this.nodeCount = nodeCount;
+        this.triCount = triCount;
+        this.depth = depth;
+        this.expectedCost = expectedCost;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getTriangleCount() {
+        return triCount;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public double getExpectedCost() {
+        return expectedCost;
+    }
+
+    // bytes held in the box, link, triangle and component arrays
+    public long getBytes() {
+        return (bounds.length + tris.length + (soa == null ? 0 : soa.length)) * 8L + nodes.length * 4L;
+    }
+
+    boolean isLeaf(int node) {
+        return nodes[node * 2 + 1] > 0;
+    }
+
+    boolean AABBSphereTest(int node, double x, double y, double z, double r) {
+        int b = node * 6;
+        if (x < bounds[b] - r || x > bounds[b + 3] + r) return false;
+        if (y < bounds[b + 1] - r || y > bounds[b + 4] + r) return false;
+        if (z < bounds[b + 2] - r || z > bounds[b + 5] + r) return false;
+        return true;
+    }
+
+    boolean AABBBoxTest(int node, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        int b = node * 6;
+        return minX <= bounds[b + 3] && maxX >= bounds[b]
+            && minY <= bounds[b + 4] && maxY >= bounds[b + 1]
+            && minZ <= bounds[b + 5] && maxZ >= bounds[b + 2];
+    }
+
+    // slab test of the ray o + t d, given by its inverse direction i: the t
+    // at which it enters the node's box, 0 if it starts inside, or infinity
+    // if it misses the box within [0, maxT]. An axis the ray doesn't move
+    // along (i infinite) only asks whether o lies within the slab; its t
+    // bounds would be 0 * infinity, NaN, right on a face
+    double AABBRayEntry(int node, double ox, double oy, double oz, double ix, double iy, double iz, double maxT) {
+        int b = node * 6;
+        double near = 0, far = maxT;
+        if (Double.isInfinite(ix)) {
+            if (ox < bounds[b] || ox > bounds[b + 3]) return Double.POSITIVE_INFINITY;
+        } else {
+            double t0 = (bounds[b] - ox) * ix, t1 = (bounds[b + 3] - ox) * ix;
+            near = Math.max(near, Math.min(t0, t1));
+            far = Math.min(far, Math.max(t0, t1));
+        }
+        if (Double.isInfinite(iy)) {
+            if (oy < bounds[b + 1] || oy > bounds[b + 4]) return Double.POSITIVE_INFINITY;
+        } else {
+            double t0 = (bounds[b + 1] - oy) * iy, t1 = (bounds[b + 4] - oy) * iy;
+            near = Math.max(near, Math.min(t0, t1));
+            far = Math.min(far, Math.max(t0, t1));
+        }
+        if (Double.isInfinite(iz)) {
+            if (oz < bounds[b + 2] || oz > bounds[b + 5]) return Double.POSITIVE_INFINITY;
+        } else {
+            double t0 = (bounds[b + 2] - oz) * iz, t1 = (bounds[b + 5] - oz) * iz;
+            near = Math.max(near, Math.min(t0, t1));
+            far = Math.min(far, Math.max(t0, t1));
+        }
+        return near <= far ? near : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LinearBvh[triangles=%d, nodes=%d, depth=%d, cost=%.2f]",
+            triCount, nodeCount, depth, expectedCost);
+    }
+}
@@ -1,4 +1,8 @@
+package racingthing;
+
 import javafx.application.Application;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.input.ScrollEvent;
 import javafx.stage.Stage;
 import javafx.scene.*;
@@ -19,7 +23,15 @@ public class Main extends Application {
     private final Rotate rotateY = new Rotate(-20, Rotate.Y_AXIS);
     private final Translate translate = new Translate(0, 0, -150);
 
-    Car car;
+    World race;
+    List<CarView> carViews = new ArrayList<>();
+    PhysicsThread physics;
+    TrackView track;
+    private final Metrics viewMetrics = new Metrics();
+    private MetricsReport metrics;
+    // arrow keys held down, pushing the car along the track axes
+    private final Set<KeyCode> held = EnumSet.noneOf(KeyCode.class);
+    private static final double PUSH = 0.00005;
 
     @Override
     public void start(Stage primaryStage) {
@@ -60,22 +72,42 @@ public class Main extends Application {
             }
         }.start();
 
+        double tileSize = Double.parseDouble(System.getProperty("racingthing.tiles", "0"));
         try {
-            car = new Car(
-                new Point3D(0.724999, -4.63841, 95.6295), 
-                "assets/Maps/TestMap/TestMap.obj",
-                "assets/Models/Car/ChassisCollision.txt",
-                "assets/Models/Car/Tofu_Car_Chassis.obj",
-                "assets/Models/Car/Tofu_Car_Wheel.obj",
-                1,
-                world
+            String trackPath = Assets.resolve("assets/Maps/TestMap/TestMap.obj");
+            BvhBuilder builder = new BvhBuilder(BvhBuilder.Split.SAH, 8);
+            // parsed once for the view, and for the collision build on a cache miss
+            ObjModel trackModel = ObjModel.load(trackPath);
+
+            CollisionMesh collision = tileSize > 0 ? CollisionMesh.tiled(trackPath, trackModel, builder, tileSize)
+                : CollisionMesh.load(trackPath, trackModel, builder);
+            race = new World(Boolean.getBoolean("racingthing.compact") && tileSize <= 0
+                ? collision.compact() : collision);
+            Car car = race.addCar(
+                new Point3D(0.724999, -4.63841, 95.6295),
+                Assets.resolve("assets/Models/Car/ChassisCollision.txt"),
+                Boolean.getBoolean("racingthing.wheels") ? Assets.resolve("assets/Models/Car/WheelCollision.txt") : null
             );
+            carViews.add(new CarView(
+                car,
+                race.getCars().indexOf(car),
+                Assets.resolve("assets/Models/Car/Tofu_Car_Chassis.obj"),
+                Assets.resolve("assets/Models/Car/Tofu_Car_Wheel.obj"),
+                world
+            ));
+            String record = System.getProperty("racingthing.record");
+            physics = new PhysicsThread(race, 1.0 / 60, record == null ? null
+                : new Recorder(Paths.get(record), race, trackPath, builder, 1.0 / 60, 60));
 
-            Mesh a = new Mesh("assets/Maps/TestMap/TestMap.obj");
-            world.getChildren().add(a);
+            track = new TrackView(trackModel);
+            world.getChildren().add(track);
         } catch (IOException e) {
             e.printStackTrace();
             System.exit(1);
+        } catch (IllegalArgumentException e) {
+            // a malformed asset, or racingthing.wheels on a compact or tiled track
+            System.err.println(e.getMessage());
+            System.exit(2);
         }
 
         PerspectiveCamera camera = new PerspectiveCamera(true);
@@ -105,16 +137,45 @@ public class Main extends Application {
                     translate.setZ(translate.getZ() + delta * 0.1);
             });
 
+        scene.addEventHandler(KeyEvent.KEY_PRESSED, ev -> {
+                    if (held.add(ev.getCode())) push();
+            });
+        scene.addEventHandler(KeyEvent.KEY_RELEASED, ev -> {
+                    if (held.remove(ev.getCode())) push();
+            });
+
         primaryStage.setScene(scene);
         primaryStage.setTitle("Racing Game");
         primaryStage.show();
 
+        metrics = race.addMetricsTo(new MetricsReport()).add(viewMetrics);
+        try {
+            metrics.start();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        physics.start();
         new AnimationTimer() {
             @Override public void handle(long now) {
-                for (int step = 0; step < 1; step++) {
-                    car.update();
-                }
+                long t = Metrics.now();
+                WorldSnapshot snapshot = physics.latest();
+                double alpha = physics.alpha(snapshot, System.nanoTime());
+                for (CarView v : carViews) v.sync(snapshot, alpha);
+                track.update(camera, scene.getWidth() / scene.getHeight());
+                viewMetrics.lap(Metrics.Phase.SYNC, t);
             }
         }.start();
     }
+
+    private void push() {
+        double x = (held.contains(KeyCode.RIGHT) ? PUSH : 0) - (held.contains(KeyCode.LEFT) ? PUSH : 0);
+        double z = (held.contains(KeyCode.UP) ? PUSH : 0) - (held.contains(KeyCode.DOWN) ? PUSH : 0);
+        physics.setInput(0, x, 0, z);
+    }
+
+    @Override
+    public void stop() throws InterruptedException, IOException {
+        if (physics != null) physics.stop();
+        if (metrics != null) metrics.stop();
+    }
 }
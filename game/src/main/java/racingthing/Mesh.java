@@ -0,0 +1,187 @@
+package racingthing;
+
+import javafx.scene.Group;
+import javafx.scene.paint.*;
+import javafx.scene.shape.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.*;
+
+
+public class Mesh extends Group {
+    private final Map<String, PhongMaterial> materials;
+
+    
+    public Mesh(String objPath) throws IOException {
+        this(ObjModel.load(objPath));
+    }
+
+    public Mesh(ObjModel model) throws IOException {
+        this(model, loadMaterials(model), null, model.triCount, null, new Scratch());
+    }
+
+    // One MeshView per material. Points and texcoords are deduplicated per
+    // material on their own OBJ indices, which are dense, so the index maps
+    // are plain int arrays stamped with the material they were filled for.
+    // Faces are (point, texcoord) pairs; corners without a texcoord share one
+    // extra (0, 0) entry. tris picks the triangles to draw, null for all of
+    // them, and vertexMap moves position indices onto others, null for none.
+    Mesh(ObjModel model, Map<String, PhongMaterial> materials, int[] tris, int triCount, int[] vertexMap,
+         Scratch scratch) {
+        this.materials = materials;
+        scratch.fit(model);
+
+        // triangles bucketed by material
+        int matCount = model.materials.size();
+        int[] matStart = new int[matCount + 1];
+        for (int i = 0; i < triCount; i++) matStart[model.triMaterials[tris == null ? i : tris[i]] + 1]++;
+        for (int m = 0; m < matCount; m++) matStart[m + 1] += matStart[m];
+        int[] byMat = new int[triCount];
+        int[] fill = Arrays.copyOf(matStart, matCount);
+        for (int i = 0; i < triCount; i++) {
+            int t = tris == null ? i : tris[i];
+            byMat[fill[model.triMaterials[t]]++] = t;
+        }
+
+        int[] pointIdx = scratch.pointIdx, pointStamp = scratch.pointStamp;
+        int[] texIdx = scratch.texIdx, texStamp = scratch.texStamp;
+
+        for (int m = 0; m < matCount; m++) {
+            int count = matStart[m + 1] - matStart[m];
+            if (count == 0) continue;
+            int stamp = ++scratch.stamp;
+            if (scratch.faces.length < count * 6) scratch.faces = new int[count * 6];
+            float[] points = scratch.points, texes = scratch.texes;
+            int[] faces = scratch.faces;
+            int np = 0, nt = 0, nf = 0, blank = -1;
+
+            for (int i = matStart[m]; i < matStart[m + 1]; i++) {
+                int t = byMat[i];
+                for (int k = t * 3; k < t * 3 + 3; k++) {
+                    int vi = model.triPositions[k], ti = model.triTexCoords[k];
+                    if (vertexMap != null) vi = vertexMap[vi];
+                    if (pointStamp[vi] != stamp) {
+                        pointStamp[vi] = stamp;
+                        pointIdx[vi] = np;
+                        if (np * 3 + 3 > points.length) points = Arrays.copyOf(points, points.length * 2);
+                        points[np * 3] = (float) model.positions[vi * 3];
+                        points[np * 3 + 1] = (float) model.positions[vi * 3 + 1];
+                        points[np * 3 + 2] = (float) model.positions[vi * 3 + 2];
+                        np++;
+                    }
+                    int tex;
+                    if (ti >= 0) {
+                        if (texStamp[ti] != stamp) {
+                            texStamp[ti] = stamp;
+                            texIdx[ti] = nt;
+                            if (nt * 2 + 2 > texes.length) texes = Arrays.copyOf(texes, texes.length * 2);
+                            texes[nt * 2] = model.texCoords[ti * 2];
+                            texes[nt * 2 + 1] = model.texCoords[ti * 2 + 1];
+                            nt++;
+                        }
+                        tex = texIdx[ti];
+                    } else {
+                        if (blank < 0) {
+                            if (nt * 2 + 2 > texes.length) texes = Arrays.copyOf(texes, texes.length * 2);
+                            texes[nt * 2] = 0;
+                            texes[nt * 2 + 1] = 0;
+                            blank = nt++;
+                        }
+                        tex = blank;
+                    }
+                    faces[nf++] = pointIdx[vi];
+                    faces[nf++] = tex;
+                }
+            }
+            scratch.points = points;
+            scratch.texes = texes;
+
+            TriangleMesh mesh = new TriangleMesh();
+            mesh.getPoints().setAll(points, 0, np * 3);
+            mesh.getTexCoords().setAll(texes, 0, nt * 2);
+            mesh.getFaces().setAll(faces, 0, nf);
+
+            MeshView mv = new MeshView(mesh);
+            mv.setMaterial(materials.getOrDefault(model.materials.get(m), new PhongMaterial()));
+            mv.setCullFace(CullFace.BACK);
+            this.getChildren().add(mv);
+        }
+    }
+
+    // index maps and buffers shared by every Mesh built from one model; the
+    // stamp only grows, so nothing is cleared between materials or meshes
+    static final class Scratch {
+        int[] pointIdx = new int[0], pointStamp = new int[0];
+        int[] texIdx = new int[0], texStamp = new int[0];
+        int stamp;
+        float[] points = new float[3 * 256];
+        float[] texes = new float[2 * 256];
+        int[] faces = new int[6 * 256];
+
+        void fit(ObjModel model) {
+            if (pointIdx.length < model.vertexCount) {
+                pointIdx = new int[model.vertexCount];
+                pointStamp = new int[model.vertexCount];
+            }
+            if (texIdx.length < model.texCoordCount) {
+                texIdx = new int[model.texCoordCount];
+                texStamp = new int[model.texCoordCount];
+            }
+        }
+    }
+
+    static Map<String, PhongMaterial> loadMaterials(ObjModel model) throws IOException {
+        Map<String, PhongMaterial> materials = new HashMap<>();
+        if (model.getMaterialLibraryPath() != null) {
+            loadMTL(model.getMaterialLibraryPath(), materials);
+        }
+        return materials;
+    }
+
+    private static void loadMTL(String mtlPath, Map<String, PhongMaterial> materials) throws IOException {
+        File mtlFile = new File(mtlPath);
+        try (BufferedReader mr = new BufferedReader(new FileReader(mtlFile))) {
+            String ml;
+            PhongMaterial mat = null;
+            String name = null;
+            while ((ml = mr.readLine()) != null) {
+                ml = ml.trim();
+                if (ml.isEmpty() || ml.startsWith("#")) continue;
+                String[] m = ml.split("\\s+");
+                switch (m[0]) {
+                    case "newmtl":
+                        name = m[1];
+                        mat = new PhongMaterial();
+                        materials.put(name, mat);
+                        break;
+                    case "Ns": 
+                        if (mat!=null) {
+                            mat.setSpecularPower(255 / Float.parseFloat(m[1])); 
+                        }
+                        break;
+                    case "Kd": 
+                        if (mat!=null) {
+                            mat.setDiffuseColor(new Color(
+                                Double.parseDouble(m[1]),
+                                Double.parseDouble(m[2]),
+                                Double.parseDouble(m[3]),1))
+                            ; 
+                        }
+                        break;
+                    case "Ks": 
+                        if (mat!=null) {
+                            mat.setSpecularColor(new Color(
+                                Double.parseDouble(m[1]),
+                                Double.parseDouble(m[2]),
+                                Double.parseDouble(m[3]),1))
+                            ; 
+                        }
+                        break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package racingthing;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Latency histogram per phase of a tick plus running work counters. Each
+// Car, the World and the view own one; MetricsReport drains them all from
+// its own thread, so every slot is an atomic and draining zeroes it.
+//
+// Off unless -Dracingthing.metrics=true. ENABLED is a constant, so with it
+// false now() and lap() are a return of 0 and the counting blocks around
+// them are dead code the JIT drops.
+public class Metrics {
+    public static final boolean ENABLED = Boolean.getBoolean("racingthing.metrics");
+
+    public enum Phase { INTEGRATE, COLLIDE, CAR_CONTACTS, STICKS, FIT, SYNC }
+
+    public enum Counter { NODES_VISITED, TRIANGLES_TESTED, CONTACTS, SOLVER_ITERATIONS }
+
+    // log-linear buckets over nanoseconds: exact below 8, then 8 per power
+    // of two, so a percentile is off by at most an eighth
+    static final int SUB_BITS = 3, SUB = 1 << SUB_BITS;
+    static final int BUCKETS = (64 - SUB_BITS + 1) * SUB;
+    // per phase: buckets, then total nanos and max
+    static final int TOTAL = BUCKETS, MAX = BUCKETS + 1, STRIDE = BUCKETS + 2;
+
+    // null when off, so JFR isn't even loaded
+    private static final EventType PHASE_EVENT = ENABLED ? EventType.getEventType(PhaseEvent.class) : null;
+
+    final AtomicLongArray phases = new AtomicLongArray(Phase.values().length * STRIDE);
+    final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+
+    public static long now() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    // records the time since since under phase and returns now, to chain
+    // straight into the next phase
+    public long lap(Phase phase, long since) {
+        if (!ENABLED) return 0;
+        long now = System.nanoTime();
+        record(phase, now - since);
+        return now;
+    }
+
+    public void record(Phase phase, long nanos) {
+        int o = phase.ordinal() * STRIDE;
+        phases.getAndIncrement(o + bucket(nanos));
+        phases.getAndAdd(o + TOTAL, nanos);
+        phases.accumulateAndGet(o + MAX, nanos, Math::max);
+        if (PHASE_EVENT != null && PHASE_EVENT.isEnabled()) {
+            PhaseEvent e = new PhaseEvent();
+            e.phase = phase.name();
+            e.time = nanos;
+            e.commit();
+        }
+    }
+
+    public void count(Counter counter, long n) {
+        if (ENABLED) counters.getAndAdd(counter.ordinal(), n);
+    }
+
+    static int bucket(long nanos) {
+        if (nanos < SUB) return (int) Math.max(0, nanos);
+        int exp = 63 - Long.numberOfLeadingZeros(nanos);
+        return (exp - SUB_BITS + 1) * SUB + (int) (nanos >>> (exp - SUB_BITS)) - SUB;
+    }
+
+    // largest value that lands in bucket b
+    static long bucketTop(int b) {
+        if (b < SUB) return b;
+        int shift = b / SUB - 1;
+        return ((long) (b % SUB + SUB + 1) << shift) - 1;
+    }
+
+    // moves everything recorded so far into into, leaving this one empty
+    void drainTo(Metrics into) {
+        for (int i = 0; i < phases.length(); i++) {
+            long v = phases.getAndSet(i, 0);
+            if (i % STRIDE == MAX) {
+                into.phases.accumulateAndGet(i, v, Math::max);
+            } else {
+                into.phases.getAndAdd(i, v);
+            }
+        }
+        for (int i = 0; i < counters.length(); i++) into.counters.getAndAdd(i, counters.getAndSet(i, 0));
+    }
+
+    public long getCount(Phase phase) {
+        long n = 0;
+        for (int b = 0; b < BUCKETS; b++) n += phases.get(phase.ordinal() * STRIDE + b);
+        return n;
+    }
+
+    // upper bound of the bucket holding the q quantile, capped at the max
+    public long getPercentile(Phase phase, double q) {
+        int o = phase.ordinal() * STRIDE;
+        long target = (long) Math.ceil(q * getCount(phase)), seen = 0;
+        if (target == 0) return 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += phases.get(o + b);
+            if (seen >= target) return Math.min(bucketTop(b), getMax(phase));
+        }
+        return getMax(phase);
+    }
+
+    public long getMax(Phase phase) {
+        return phases.get(phase.ordinal() * STRIDE + MAX);
+    }
+
+    public long getTotal(Phase phase) {
+        return phases.get(phase.ordinal() * STRIDE + TOTAL);
+    }
+
+    public long getCounter(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    // one per phase run, for a flight recording that wants every tick;
+    // off by default, the per period PhaseSummary covers the usual case
+    @Name("racingthing.Phase")
+    @Label("Physics Phase")
+    @Category("Racing Thing")
+    @StackTrace(false)
+    @Enabled(false)
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Time")
+        @Timespan
+        long time;
+    }
+}
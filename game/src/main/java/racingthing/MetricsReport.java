@@ -0,0 +1,217 @@
+package racingthing;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Gathers a set of Metrics every period (-Dracingthing.metrics.period,
+// seconds, default 5) on its own daemon thread and reports that period: a
+// table on stdout, or one CSV row per period when
+// -Dracingthing.metrics.csv=<file> is set, and a PhaseSummary event per
+// phase plus a Counters event for any flight recording. Sources can be added
+// while it runs. Does nothing at all unless Metrics.ENABLED.
+public class MetricsReport {
+    private final List<Metrics> sources = new CopyOnWriteArrayList<>();
+    private final Metrics period = new Metrics();
+    private final Metrics total = new Metrics();
+    private final long periodNanos;
+    private final Path csv;
+    private final PrintStream out;
+    private Writer csvOut;
+    private Thread thread;
+    // running until stop(); failed once the reporter thread couldn't write
+    private volatile boolean running, failed;
+    private long started, last;
+
+    public MetricsReport() {
+        this(Double.parseDouble(System.getProperty("racingthing.metrics.period", "5")),
+            System.getProperty("racingthing.metrics.csv"), System.out);
+    }
+
+    public MetricsReport(double periodSeconds, String csv, PrintStream out) {
+        this.periodNanos = (long) (periodSeconds * 1e9);
+        this.csv = csv == null ? null : Path.of(csv);
+        this.out = out;
+    }
+
+    public MetricsReport add(Metrics m) {
+        sources.add(m);
+        return this;
+    }
+
+    public void start() throws IOException {
+        if (!Metrics.ENABLED) return;
+        if (csv != null) {
+            csvOut = Files.newBufferedWriter(csv, StandardCharsets.UTF_8);
+            csvOut.write(csvHeader());
+            csvOut.write('\n');
+        }
+        started = last = System.nanoTime();
+        running = true;
+        thread = new Thread(this::run, "metrics");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // reports what is left as a last period and the totals since start(),
+    // and always closes the CSV file, even after the reporter thread failed
+    public void stop() throws IOException {
+        if (thread == null) return;
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+        try {
+            if (!failed) report(System.nanoTime());
+        } catch (IOException e) {
+            System.err.println("metrics: " + e);
+        } finally {
+            if (csvOut != null) csvOut.close();
+        }
+        if (csv == null) out.print(table("total over " + seconds(last - started), total));
+    }
+
+    private void run() {
+        while (running) {
+            LockSupport.parkNanos(last + periodNanos - System.nanoTime());
+            long now = System.nanoTime();
+            if (running && now - last >= periodNanos) {
+                try {
+                    report(now);
+                } catch (IOException e) {
+                    System.err.println("metrics: " + e);
+                    failed = true;
+                    return;
+                }
+            }
+        }
+    }
+
+    private void report(long now) throws IOException {
+        for (Metrics m : sources) m.drainTo(period);
+        commitEvents(period);
+        if (csvOut != null) {
+            csvOut.write(csvRow((now - started) / 1e9, period));
+            csvOut.write('\n');
+            csvOut.flush();
+        } else {
+            out.print(table("last " + seconds(now - last), period));
+        }
+        period.drainTo(total);
+        last = now;
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.1f s", nanos / 1e9);
+    }
+
+    static String table(String title, Metrics m) {
+        StringBuilder b = new StringBuilder();
+        b.append(String.format(Locale.ROOT, "metrics, %s%n%-14s %9s %10s %10s %10s%n",
+            title, "phase", "count", "p50 us", "p99 us", "max us"));
+        for (Metrics.Phase p : Metrics.Phase.values()) {
+            long n = m.getCount(p);
+            if (n == 0) continue;
+            b.append(String.format(Locale.ROOT, "%-14s %9d %10.1f %10.1f %10.1f%n", p.name().toLowerCase(Locale.ROOT),
+                n, m.getPercentile(p, 0.5) / 1e3, m.getPercentile(p, 0.99) / 1e3, m.getMax(p) / 1e3));
+        }
+        for (Metrics.Counter c : Metrics.Counter.values()) {
+            b.append(String.format(Locale.ROOT, "%-18s %d%n",
+                c.name().toLowerCase(Locale.ROOT).replace('_', ' '), m.getCounter(c)));
+        }
+        return b.toString();
+    }
+
+    static String csvHeader() {
+        StringBuilder b = new StringBuilder("time_s");
+        for (Metrics.Phase p : Metrics.Phase.values()) {
+            String n = p.name().toLowerCase(Locale.ROOT);
+            b.append(',').append(n).append("_count,").append(n).append("_p50_ns,").append(n).append("_p99_ns,")
+                .append(n).append("_max_ns");
+        }
+        for (Metrics.Counter c : Metrics.Counter.values()) b.append(',').append(c.name().toLowerCase(Locale.ROOT));
+        return b.toString();
+    }
+
+    static String csvRow(double time, Metrics m) {
+        StringBuilder b = new StringBuilder(String.format(Locale.ROOT, "%.3f", time));
+        for (Metrics.Phase p : Metrics.Phase.values()) {
+            b.append(',').append(m.getCount(p)).append(',').append(m.getPercentile(p, 0.5)).append(',')
+                .append(m.getPercentile(p, 0.99)).append(',').append(m.getMax(p));
+        }
+        for (Metrics.Counter c : Metrics.Counter.values()) b.append(',').append(m.getCounter(c));
+        return b.toString();
+    }
+
+    private static void commitEvents(Metrics m) {
+        for (Metrics.Phase p : Metrics.Phase.values()) {
+            PhaseSummary e = new PhaseSummary();
+            if (!e.isEnabled() || m.getCount(p) == 0) continue;
+            e.phase = p.name();
+            e.count = m.getCount(p);
+            e.p50 = m.getPercentile(p, 0.5);
+            e.p99 = m.getPercentile(p, 0.99);
+            e.max = m.getMax(p);
+            e.commit();
+        }
+        Counters c = new Counters();
+        if (!c.isEnabled()) return;
+        c.nodesVisited = m.getCounter(Metrics.Counter.NODES_VISITED);
+        c.trianglesTested = m.getCounter(Metrics.Counter.TRIANGLES_TESTED);
+        c.contacts = m.getCounter(Metrics.Counter.CONTACTS);
+        c.solverIterations = m.getCounter(Metrics.Counter.SOLVER_ITERATIONS);
+        c.commit();
+    }
+
+    @Name("racingthing.PhaseSummary")
+    @Label("Physics Phase Summary")
+    @Category("Racing Thing")
+    @StackTrace(false)
+    static class PhaseSummary extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Count")
+        long count;
+        @Label("p50")
+        @Timespan
+        long p50;
+        @Label("p99")
+        @Timespan
+        long p99;
+        @Label("Max")
+        @Timespan
+        long max;
+    }
+
+    @Name("racingthing.Counters")
+    @Label("Physics Counters")
+    @Category("Racing Thing")
+    @StackTrace(false)
+    static class Counters extends Event {
+        @Label("BVH Nodes Visited")
+        long nodesVisited;
+        @Label("Triangles Tested")
+        long trianglesTested;
+        @Label("Contacts")
+        long contacts;
+        @Label("Solver Iterations")
+        long solverIterations;
+    }
+}
@@ -0,0 +1,145 @@
+package racingthing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Triangulated OBJ contents in flat arrays, shared by the render Mesh and the
+// CollisionMesh so each file is only read once. Positions are stored with x
+// and y negated, the same flip both consumers used to apply themselves.
+public class ObjModel {
+    final String source;
+    final String mtlLib;
+
+    // 3 per vertex
+    final double[] positions;
+    final int vertexCount;
+    // 2 per texcoord
+    final float[] texCoords;
+    final int texCoordCount;
+
+    // 3 per triangle; texture indices are -1 where the face gave none
+    final int[] triPositions;
+    final int[] triTexCoords;
+    final int[] triMaterials;
+    final int triCount;
+    // first entry is always "default", for faces before any usemtl
+    final List<String> materials;
+
+    private ObjModel(String source, String mtlLib, double[] positions, int vertexCount,
+                     float[] texCoords, int texCoordCount, int[] triPositions, int[] triTexCoords,
+                     int[] triMaterials, int triCount, List<String> materials) {
+        this.source = source;
+        this.mtlLib = mtlLib;
+        this.positions = positions;
+        this.vertexCount = vertexCount;
+        this.texCoords = texCoords;
+        this.texCoordCount = texCoordCount;
+        this.triPositions = triPositions;
+        this.triTexCoords = triTexCoords;
+        this.triMaterials = triMaterials;
+        this.triCount = triCount;
+        this.materials = materials;
+    }
+
+    public static ObjModel load(String objPath) throws IOException {
+        ObjReader in = ObjReader.open(objPath);
+
+        double[] pos = new double[3 * 1024];
+        float[] tex = new float[2 * 1024];
+        int[] triPos = new int[3 * 1024], triTex = new int[3 * 1024], triMat = new int[1024];
+        int nv = 0, nt = 0, nf = 0;
+        int[] facePos = new int[8], faceTex = new int[8];
+        List<String> materials = new ArrayList<>();
+        materials.add("default");
+        int currentMat = 0;
+        String mtlLib = null;
+
+        while (in.nextLine()) {
+            if (in.keyword("v")) {
+                if (nv * 3 + 3 > pos.length) pos = Arrays.copyOf(pos, pos.length * 2);
+                pos[nv * 3] = -in.readDouble();
+                pos[nv * 3 + 1] = -in.readDouble();
+                pos[nv * 3 + 2] = in.readDouble();
+                nv++;
+            } else if (in.keyword("vt")) {
+                if (nt * 2 + 2 > tex.length) tex = Arrays.copyOf(tex, tex.length * 2);
+                tex[nt * 2] = (float) in.readDouble();
+                tex[nt * 2 + 1] = (float) in.readDouble();
+                nt++;
+            } else if (in.keyword("f")) {
+                int n = 0;
+                while (!in.atLineEnd()) {
+                    if (n == facePos.length) {
+                        facePos = Arrays.copyOf(facePos, n * 2);
+                        faceTex = Arrays.copyOf(faceTex, n * 2);
+                    }
+                    facePos[n] = index(in.readInt(), nv);
+                    faceTex[n] = -1;
+                    if (in.skip('/')) {
+                        if (in.atNumber()) faceTex[n] = index(in.readInt(), nt);
+                        if (in.skip('/') && in.atNumber()) in.readInt();
+                    }
+                    n++;
+                }
+                for (int j = 1; j < n - 1; j++) {
+                    if (nf * 3 + 3 > triPos.length) {
+                        triPos = Arrays.copyOf(triPos, triPos.length * 2);
+                        triTex = Arrays.copyOf(triTex, triTex.length * 2);
+                        triMat = Arrays.copyOf(triMat, triMat.length * 2);
+                    }
+                    triPos[nf * 3] = facePos[0];
+                    triPos[nf * 3 + 1] = facePos[j];
+                    triPos[nf * 3 + 2] = facePos[j + 1];
+                    triTex[nf * 3] = faceTex[0];
+                    triTex[nf * 3 + 1] = faceTex[j];
+                    triTex[nf * 3 + 2] = faceTex[j + 1];
+                    triMat[nf] = currentMat;
+                    nf++;
+                }
+            } else if (in.keyword("usemtl")) {
+                String name = in.readWord();
+                currentMat = materials.indexOf(name);
+                if (currentMat < 0) {
+                    currentMat = materials.size();
+                    materials.add(name);
+                }
+            } else if (in.keyword("mtllib")) {
+                if (mtlLib == null) mtlLib = in.readWord();
+            }
+            in.skipLine();
+        }
+
+        return new ObjModel(objPath, mtlLib, pos, nv, tex, nt, triPos, triTex, triMat, nf, materials);
+    }
+
+    // OBJ indices are 1 based, negative ones count back from the last element
+    private static int index(int i, int count) {
+        return i < 0 ? count + i : i - 1;
+    }
+
+    // MTL path next to the OBJ, or null if the file named none
+    public String getMaterialLibraryPath() {
+        if (mtlLib == null) return null;
+        return new File(source).getParent() + File.separator + mtlLib;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getTriangleCount() {
+        return triCount;
+    }
+
+    // 9 doubles per triangle, the layout BvhBuilder takes
+    public double[] toTriangleSoup() {
+        double[] tris = new double[triCount * 9];
+        for (int t = 0; t < triCount * 3; t++) {
+            System.arraycopy(positions, triPositions[t] * 3, tris, t * 3, 3);
+        }
+        return tris;
+    }
+}
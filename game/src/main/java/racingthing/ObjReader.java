@@ -0,0 +1,185 @@
+package racingthing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Byte level tokenizer over a memory mapped text file. Numbers are parsed
+// straight from the bytes, so reading a line allocates nothing unless a
+// word is asked for as a String.
+class ObjReader {
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final ByteBuffer buf;
+    private final int limit;
+    private int pos;
+
+    ObjReader(ByteBuffer buf) {
+        this.buf = buf;
+        this.pos = buf.position();
+        this.limit = buf.limit();
+    }
+
+    static ObjReader open(String path) throws IOException {
+        try (FileChannel ch = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            return new ObjReader(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    // moves to the first token of the next line that has one, skipping
+    // blank lines and # comments
+    boolean nextLine() {
+        while (true) {
+            skipBlanks();
+            if (pos >= limit) return false;
+            byte b = buf.get(pos);
+            if (b == '\n' || b == '\r') {
+                pos++;
+            } else if (b == '#') {
+                skipLine();
+            } else {
+                return true;
+            }
+        }
+    }
+
+    void skipLine() {
+        while (pos < limit && buf.get(pos) != '\n') pos++;
+        if (pos < limit) pos++;
+    }
+
+    // true and consumes the keyword if the current token is exactly kw
+    boolean keyword(String kw) {
+        int n = kw.length();
+        if (pos + n > limit) return false;
+        for (int i = 0; i < n; i++) {
+            if (buf.get(pos + i) != kw.charAt(i)) return false;
+        }
+        if (pos + n < limit && !isSpace(buf.get(pos + n)) && !isEol(buf.get(pos + n))) return false;
+        pos += n;
+        return true;
+    }
+
+    boolean atLineEnd() {
+        skipBlanks();
+        return pos >= limit || isEol(buf.get(pos));
+    }
+
+    boolean skip(char c) {
+        if (pos < limit && buf.get(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    boolean atNumber() {
+        if (pos >= limit) return false;
+        byte b = buf.get(pos);
+        return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.';
+    }
+
+    String readWord() {
+        skipBlanks();
+        int start = pos;
+        while (pos < limit && !isSpace(buf.get(pos)) && !isEol(buf.get(pos))) pos++;
+        byte[] bytes = new byte[pos - start];
+        buf.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    int readInt() {
+        skipBlanks();
+        boolean neg = false;
+        if (pos < limit && (buf.get(pos) == '-' || buf.get(pos) == '+')) {
+            neg = buf.get(pos++) == '-';
+        }
+        int v = 0, start = pos;
+        while (pos < limit) {
+            int d = buf.get(pos) - '0';
+            if (d < 0 || d > 9) break;
+            v = v * 10 + d;
+            pos++;
+        }
+        if (pos == start) throw error("integer");
+        return neg ? -v : v;
+    }
+
+    // mantissa / 10^k is exact as long as the mantissa fits in 53 bits and
+    // k <= 22; anything longer falls back to Double.parseDouble
+    double readDouble() {
+        skipBlanks();
+        int start = pos;
+        boolean neg = false;
+        if (pos < limit && (buf.get(pos) == '-' || buf.get(pos) == '+')) {
+            neg = buf.get(pos++) == '-';
+        }
+        long mantissa = 0;
+        int digits = 0, scale = 0;
+        boolean any = false;
+        while (pos < limit) {
+            int d = buf.get(pos) - '0';
+            if (d < 0 || d > 9) break;
+            mantissa = mantissa * 10 + d;
+            if (mantissa != 0) digits++;
+            any = true;
+            pos++;
+        }
+        if (pos < limit && buf.get(pos) == '.') {
+            pos++;
+            while (pos < limit) {
+                int d = buf.get(pos) - '0';
+                if (d < 0 || d > 9) break;
+                mantissa = mantissa * 10 + d;
+                if (mantissa != 0) digits++;
+                scale++;
+                any = true;
+                pos++;
+            }
+        }
+        if (!any) throw error("number");
+        int exp = 0;
+        if (pos < limit && (buf.get(pos) == 'e' || buf.get(pos) == 'E')) {
+            pos++;
+            exp = readInt();
+        }
+        int e = exp - scale;
+        if (digits > 15 || e < -22 || e > 22) {
+            return slowDouble(start);
+        }
+        double v = e < 0 ? mantissa / POW10[-e] : mantissa * POW10[e];
+        return neg ? -v : v;
+    }
+
+    private double slowDouble(int start) {
+        byte[] bytes = new byte[pos - start];
+        buf.get(start, bytes);
+        return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+    }
+
+    private void skipBlanks() {
+        while (pos < limit && isSpace(buf.get(pos))) pos++;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean isEol(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    private IllegalArgumentException error(String what) {
+        int line = 1;
+        for (int i = 0; i < pos && i < limit; i++) {
+            if (buf.get(i) == '\n') line++;
+        }
+        return new IllegalArgumentException("expected " + what + " on line " + line);
+    }
+}
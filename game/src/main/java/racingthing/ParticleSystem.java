@@ -0,0 +1,704 @@
+package racingthing;
+
+import java.util.Arrays;
+
+public class ParticleSystem {
+    // 3 per particle
+    double[] pos = new double[48], prev = new double[48];
+    double[] radius = new double[16];
+    int count;
+
+    int[] stickA = new int[16], stickB = new int[16];
+    double[] restLength = new double[16];
+    // XPBD compliance, already divided by dt^2; 0 is perfectly rigid
+    double[] compliance = new double[16];
+    double[] lambda = new double[16];
+    int stickCount;
+
+    // sticks grouped by color, no two sticks of one color share a particle;
+    // color c is stickOrder[colorStart[c] .. colorStart[c + 1]]
+    int[] stickOrder = new int[16];
+    int[] colorStart = new int[1];
+    int colorCount;
+    private boolean colorsDirty;
+    // lengthError() after the last solve's final sweep
+    double stickError;
+
+    double damping = 0.999;
+    double minX = -200, maxX = 200;
+    double minY = -200, maxY = 100;
+    double minZ = -200, maxZ = 200;
+
+    // Per particle list of the track triangles within radius + cacheMargin of
+    // cacheCenter. collide() reuses it until the particle has moved more than
+    // the margin from that center, which covers everything within radius of
+    // it, and gathers it again when a push carries it further within the
+    // tick; a margin of 0 walks the BVH every time.
+    double cacheMargin = 0.25;
+    double[] cacheCenter = new double[48];
+    int[][] cacheTris = new int[16][];
+    // -1 until the first query
+    int[] cacheCount = new int[16];
+    private LinearBvh cacheBvh;
+    long cacheHits, cacheMisses;
+    // BVH nodes popped by any query, to see what the cache and the batch save
+    long nodeVisits;
+    // sphere vs triangle tests of any kind, and the ones that pushed a sphere
+    long triangleTests, trackContacts;
+
+    // triangles under the combined bounds of every particle whose cache ran
+    // out this tick; collide(bvh) walks the tree once for all of them and
+    // each one picks its own list out of this
+    private int[] batchTris = new int[64];
+    private int batchCount;
+    private final double[] batchBox = new double[6];
+
+    // closest points for runs of triangles, a packet at a time if it can
+    TriangleKernel kernel = TriangleKernel.create();
+
+    private int[] stack = new int[64];
+    private final double[] closest = new double[3];
+    // one QuantizedBvh triangle, decoded
+    private final double[] decoded = new double[9];
+    private final double[] hitNormal = new double[3], normal = new double[3];
+
+    public int addParticle(double x, double y, double z, double r) {
+        if (count == radius.length) {
+            pos = Arrays.copyOf(pos, count * 6);
+            prev = Arrays.copyOf(prev, count * 6);
+            radius = Arrays.copyOf(radius, count * 2);
+            cacheCenter = Arrays.copyOf(cacheCenter, count * 6);
+            cacheTris = Arrays.copyOf(cacheTris, count * 2);
+            cacheCount = Arrays.copyOf(cacheCount, count * 2);
+        }
+        cacheCount[count] = -1;
+        int o = count * 3;
+        pos[o] = prev[o] = x;
+        pos[o + 1] = prev[o + 1] = y;
+        pos[o + 2] = prev[o + 2] = z;
+        radius[count] = r;
+        return count++;
+    }
+
+    public int addStick(int a, int b) {
+        return addStick(a, b, 0);
+    }
+
+    public int addStick(int a, int b, double compliance) {
+        if (stickCount == stickA.length) {
+            stickA = Arrays.copyOf(stickA, stickCount * 2);
+            stickB = Arrays.copyOf(stickB, stickCount * 2);
+            restLength = Arrays.copyOf(restLength, stickCount * 2);
+            this.compliance = Arrays.copyOf(this.compliance, stickCount * 2);
+            lambda = Arrays.copyOf(lambda, stickCount * 2);
+            stickOrder = Arrays.copyOf(stickOrder, stickCount * 2);
+        }
+        stickA[stickCount] = a;
+        stickB[stickCount] = b;
+        restLength[stickCount] = distance(a, b);
+        this.compliance[stickCount] = compliance;
+        colorsDirty = true;
+        return stickCount++;
+    }
+
+    public int getParticleCount() {
+        return count;
+    }
+
+    public int getStickCount() {
+        return stickCount;
+    }
+
+    public double getX(int i) {
+        return pos[i * 3];
+    }
+
+    public double getY(int i) {
+        return pos[i * 3 + 1];
+    }
+
+    public double getZ(int i) {
+        return pos[i * 3 + 2];
+    }
+
+    public double getRadius(int i) {
+        return radius[i];
+    }
+
+    public double distance(int a, int b) {
+        double dx = pos[b * 3] - pos[a * 3];
+        double dy = pos[b * 3 + 1] - pos[a * 3 + 1];
+        double dz = pos[b * 3 + 2] - pos[a * 3 + 2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    public void applyForce(int i, double fx, double fy, double fz) {
+        int o = i * 3;
+        pos[o] += fx;
+        pos[o + 1] += fy;
+        pos[o + 2] += fz;
+    }
+
+    public void applyForce(double fx, double fy, double fz) {
+        for (int i = 0; i < count; i++) applyForce(i, fx, fy, fz);
+    }
+
+    public void verlet(int i) {
+        int o = i * 3;
+        double nx = pos[o] + (pos[o] - prev[o]) * damping;
+        double ny = pos[o + 1] + (pos[o + 1] - prev[o + 1]) * damping;
+        double nz = pos[o + 2] + (pos[o + 2] - prev[o + 2]) * damping;
+        prev[o] = pos[o];
+        prev[o + 1] = pos[o + 1];
+        prev[o + 2] = pos[o + 2];
+        pos[o] = Math.max(minX, Math.min(maxX, nx));
+        pos[o + 1] = Math.max(minY, Math.min(maxY, ny));
+        pos[o + 2] = Math.max(minZ, Math.min(maxZ, nz));
+    }
+
+    public void verlet() {
+        for (int i = 0; i < count; i++) verlet(i);
+    }
+
+    public void collide(int i, LinearBvh bvh) {
+        if (cacheMargin <= 0) {
+            collideUncached(i, bvh);
+            return;
+        }
+        if (bvh != cacheBvh) {
+            Arrays.fill(cacheCount, 0, count, -1);
+            cacheBvh = bvh;
+        }
+        collide(i, bvh, false);
+    }
+
+    private boolean cacheStale(int i) {
+        int o = i * 3;
+        double mx = pos[o] - cacheCenter[o], my = pos[o + 1] - cacheCenter[o + 1], mz = pos[o + 2] - cacheCenter[o + 2];
+        return cacheCount[i] < 0 || mx * mx + my * my + mz * mz > cacheMargin * cacheMargin;
+    }
+
+    private void collide(int i, LinearBvh bvh, boolean batched) {
+        int o = i * 3;
+        double x = pos[o], y = pos[o + 1], z = pos[o + 2], r = radius[i];
+        if (cacheStale(i)) {
+            if (batched) {
+                pick(i, bvh, x, y, z, r + cacheMargin);
+            } else {
+                gather(i, bvh, x, y, z, r + cacheMargin);
+            }
+            cacheMisses++;
+        } else {
+            cacheHits++;
+        }
+
+        resolve(i, bvh, cacheTris[i], 0, cacheCount[i]);
+        // a push can carry it past the margin, out of what its list covers;
+        // gather again where it ended up and go over that, until it stays
+        // within the margin or a few rounds have gone by
+        for (int round = 0; round < 4 && cacheStale(i); round++) {
+            gather(i, bvh, pos[o], pos[o + 1], pos[o + 2], r + cacheMargin);
+            cacheMisses++;
+            resolve(i, bvh, cacheTris[i], 0, cacheCount[i]);
+        }
+    }
+
+    // Pushes particle i out of triangles first until first + n (of idx, if
+    // not null) in order, each test seeing the pushes before it, exactly as
+    // going one triangle at a time would. The kernel does the rest of the
+    // run in one go and again only after a push, which is rare.
+    private void resolve(int i, LinearBvh bvh, int[] idx, int first, int n) {
+        int o = i * 3;
+        double x = pos[o], y = pos[o + 1], z = pos[o + 2], r = radius[i];
+        TriangleKernel k = kernel;
+        int end = first + n;
+        while (first < end) {
+            k.closest(bvh, idx, first, end - first, x, y, z);
+            triangleTests += end - first;
+            int j = 0;
+            double dist = 0;
+            for (; j < end - first; j++) {
+                dist = Math.sqrt(k.d2[j]);
+                if (dist < r && dist > 0) break;
+            }
+            if (j == end - first) break;
+            double dx = x - k.cx[j], dy = y - k.cy[j], dz = z - k.cz[j];
+            double push = (r - dist) / dist;
+            x += dx * push;
+            y += dy * push;
+            z += dz * push;
+            trackContacts++;
+            first += j + 1;
+        }
+        pos[o] = x;
+        pos[o + 1] = y;
+        pos[o + 2] = z;
+    }
+
+    // refills particle i's cache with the triangles within reach of x y z,
+    // in the same order a traversal would visit them
+    private void gather(int i, LinearBvh bvh, double x, double y, double z, double reach) {
+        if (stack.length < bvh.depth + 1) {
+            stack = new int[bvh.depth + 1];
+        }
+        int[] list = cacheTris[i];
+        if (list == null) list = new int[16];
+        int n = 0;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            nodeVisits++;
+            if (!bvh.AABBSphereTest(node, x, y, z, reach)) {
+                continue;
+            }
+            if (bvh.isLeaf(node)) {
+                int first = bvh.nodes[node * 2], count = bvh.nodes[node * 2 + 1];
+                triangleTests += count;
+                kernel.closest(bvh, null, first, count, x, y, z);
+                for (int j = 0; j < count; j++) {
+                    if (kernel.d2[j] > reach * reach) continue;
+                    if (n == list.length) list = Arrays.copyOf(list, n * 2);
+                    list[n++] = first + j;
+                }
+            } else {
+                stack[top++] = bvh.nodes[node * 2];
+                stack[top++] = node + 1;
+            }
+        }
+        cacheTris[i] = list;
+        cacheCount[i] = n;
+        cacheCenter[i * 3] = x;
+        cacheCenter[i * 3 + 1] = y;
+        cacheCenter[i * 3 + 2] = z;
+    }
+
+    // same list as gather, filtered out of the batch instead of the tree; the
+    // batch is in traversal order, so the picked list is too
+    private void pick(int i, LinearBvh bvh, double x, double y, double z, double reach) {
+        int[] list = cacheTris[i];
+        if (list == null) list = new int[16];
+        int n = 0;
+        double[] tris = bvh.tris;
+        for (int k = 0; k < batchCount; k++) {
+            int t = batchTris[k], o = t * 9;
+            if (Math.min(tris[o], Math.min(tris[o + 3], tris[o + 6])) > x + reach
+                || Math.max(tris[o], Math.max(tris[o + 3], tris[o + 6])) < x - reach
+                || Math.min(tris[o + 1], Math.min(tris[o + 4], tris[o + 7])) > y + reach
+                || Math.max(tris[o + 1], Math.max(tris[o + 4], tris[o + 7])) < y - reach
+                || Math.min(tris[o + 2], Math.min(tris[o + 5], tris[o + 8])) > z + reach
+                || Math.max(tris[o + 2], Math.max(tris[o + 5], tris[o + 8])) < z - reach) {
+                continue;
+            }
+            triangleTests++;
+            CollisionSphere.closestPointOnTriangle(x, y, z, tris, o, closest);
+            double dx = x - closest[0], dy = y - closest[1], dz = z - closest[2];
+            if (dx * dx + dy * dy + dz * dz > reach * reach) continue;
+            if (n == list.length) list = Arrays.copyOf(list, n * 2);
+            list[n++] = t;
+        }
+        cacheTris[i] = list;
+        cacheCount[i] = n;
+        cacheCenter[i * 3] = x;
+        cacheCenter[i * 3 + 1] = y;
+        cacheCenter[i * 3 + 2] = z;
+    }
+
+    // one walk with batchBox, collecting every triangle in the leaves it
+    // overlaps
+    private void gatherBatch(LinearBvh bvh) {
+        if (stack.length < bvh.depth + 1) {
+            stack = new int[bvh.depth + 1];
+        }
+        double[] b = batchBox;
+        batchCount = 0;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            nodeVisits++;
+            if (!bvh.AABBBoxTest(node, b[0], b[1], b[2], b[3], b[4], b[5])) {
+                continue;
+            }
+            if (bvh.isLeaf(node)) {
+                int first = bvh.nodes[node * 2], n = bvh.nodes[node * 2 + 1];
+                if (batchCount + n > batchTris.length) {
+                    batchTris = Arrays.copyOf(batchTris, Math.max(batchTris.length * 2, batchCount + n));
+                }
+                for (int t = first; t < first + n; t++) batchTris[batchCount++] = t;
+            } else {
+                stack[top++] = bvh.nodes[node * 2];
+                stack[top++] = node + 1;
+            }
+        }
+    }
+
+    public void collideUncached(int i, LinearBvh bvh) {
+        if (stack.length < bvh.depth + 1) {
+            stack = new int[bvh.depth + 1];
+        }
+        int o = i * 3;
+        double r = radius[i];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            nodeVisits++;
+            // against where earlier leaves have pushed it so far
+            if (!bvh.AABBSphereTest(node, pos[o], pos[o + 1], pos[o + 2], r)) {
+                continue;
+            }
+            if (bvh.isLeaf(node)) {
+                resolve(i, bvh, null, bvh.nodes[node * 2], bvh.nodes[node * 2 + 1]);
+            } else {
+                stack[top++] = bvh.nodes[node * 2];
+                stack[top++] = node + 1;
+            }
+        }
+    }
+
+    // every particle against the track; particles whose caches ran out share
+    // a single walk of the tree instead of one each
+    public void collide(LinearBvh bvh) {
+        if (cacheMargin <= 0) {
+            for (int i = 0; i < count; i++) collideUncached(i, bvh);
+            return;
+        }
+        if (bvh != cacheBvh) {
+            Arrays.fill(cacheCount, 0, count, -1);
+            cacheBvh = bvh;
+        }
+        double[] b = batchBox;
+        b[0] = b[1] = b[2] = Double.POSITIVE_INFINITY;
+        b[3] = b[4] = b[5] = Double.NEGATIVE_INFINITY;
+        boolean stale = false;
+        for (int i = 0; i < count; i++) {
+            if (!cacheStale(i)) continue;
+            double reach = radius[i] + cacheMargin;
+            for (int a = 0; a < 3; a++) {
+                b[a] = Math.min(b[a], pos[i * 3 + a] - reach);
+                b[a + 3] = Math.max(b[a + 3], pos[i * 3 + a] + reach);
+            }
+            stale = true;
+        }
+        if (stale) gatherBatch(bvh);
+        for (int i = 0; i < count; i++) collide(i, bvh, true);
+    }
+
+    // Particle i against a QuantizedBvh: the walk of collideUncached, with
+    // each leaf's triangles decoded to doubles and tested one at a time in
+    // leaf order. No contact cache or sweep, as there is no double copy of
+    // the triangles to keep indices into.
+    public void collide(int i, QuantizedBvh bvh) {
+        if (stack.length < bvh.depth + 1) {
+            stack = new int[bvh.depth + 1];
+        }
+        int o = i * 3;
+        double x = pos[o], y = pos[o + 1], z = pos[o + 2], r = radius[i];
+        double[] tri = decoded;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            nodeVisits++;
+            if (!bvh.AABBSphereTest(node, x, y, z, r)) {
+                continue;
+            }
+            int b = node * QuantizedBvh.NODE;
+            if (bvh.isLeaf(node)) {
+                int first = bvh.nodes[b + 3], n = bvh.nodes[b + 4];
+                triangleTests += n;
+                for (int t = first; t < first + n; t++) {
+                    bvh.triangle(t, tri, 0);
+                    CollisionSphere.closestPointOnTriangle(x, y, z, tri, 0, closest);
+                    double dx = x - closest[0], dy = y - closest[1], dz = z - closest[2];
+                    double dist = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                    if (!(dist < r && dist > 0)) continue;
+                    double push = (r - dist) / dist;
+                    x += dx * push;
+                    y += dy * push;
+                    z += dz * push;
+                    trackContacts++;
+                }
+            } else {
+                stack[top++] = bvh.nodes[b + 3];
+                stack[top++] = node + 1;
+            }
+        }
+        pos[o] = x;
+        pos[o + 1] = y;
+        pos[o + 2] = z;
+    }
+
+    public void collide(QuantizedBvh bvh) {
+        for (int i = 0; i < count; i++) collide(i, bvh);
+    }
+
+    // Continuous collision over prev -> pos. A particle that moved at least
+    // half its radius this tick could have crossed a triangle's plane before
+    // the discrete pass sees it, so it is stopped at the first time of impact
+    // and keeps only the part of its move that slides along the surface.
+    // Returns true if it hit something.
+    public boolean sweep(int i, LinearBvh bvh) {
+        if (stack.length < bvh.depth + 1) {
+            stack = new int[bvh.depth + 1];
+        }
+        int o = i * 3;
+        double r = radius[i];
+        double sx = prev[o], sy = prev[o + 1], sz = prev[o + 2];
+        double dx = pos[o] - sx, dy = pos[o + 1] - sy, dz = pos[o + 2] - sz;
+        if (dx * dx + dy * dy + dz * dz < 0.25 * r * r) return false;
+
+        double minX = Math.min(sx, pos[o]) - r, maxX = Math.max(sx, pos[o]) + r;
+        double minY = Math.min(sy, pos[o + 1]) - r, maxY = Math.max(sy, pos[o + 1]) + r;
+        double minZ = Math.min(sz, pos[o + 2]) - r, maxZ = Math.max(sz, pos[o + 2]) + r;
+        double toi = 1;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            nodeVisits++;
+            if (!bvh.AABBBoxTest(node, minX, minY, minZ, maxX, maxY, maxZ)) {
+                continue;
+            }
+            if (bvh.isLeaf(node)) {
+                int first = bvh.nodes[node * 2], n = bvh.nodes[node * 2 + 1];
+                triangleTests += n;
+                for (int t = first; t < first + n; t++) {
+                    double hit = CollisionSphere.sweepSphereTriangle(sx, sy, sz, dx, dy, dz, r, bvh.tris, t * 9, toi, normal);
+                    if (hit < toi) {
+                        toi = hit;
+                        hitNormal[0] = normal[0];
+                        hitNormal[1] = normal[1];
+                        hitNormal[2] = normal[2];
+                    }
+                }
+            } else {
+                stack[top++] = bvh.nodes[node * 2];
+                stack[top++] = node + 1;
+            }
+        }
+        if (toi >= 1) return false;
+
+        // the velocity loses its component into the surface, in prev as well
+        // so the next verlet step doesn't carry the sphere straight back in
+        double into = dx * hitNormal[0] + dy * hitNormal[1] + dz * hitNormal[2];
+        double vx = dx, vy = dy, vz = dz;
+        if (into < 0) {
+            vx -= hitNormal[0] * into;
+            vy -= hitNormal[1] * into;
+            vz -= hitNormal[2] * into;
+        }
+        pos[o] = sx + dx * toi + vx * (1 - toi);
+        pos[o + 1] = sy + dy * toi + vy * (1 - toi);
+        pos[o + 2] = sz + dz * toi + vz * (1 - toi);
+        prev[o] = pos[o] - vx;
+        prev[o + 1] = pos[o + 1] - vy;
+        prev[o + 2] = pos[o + 2] - vz;
+        return true;
+    }
+
+    public int sweep(LinearBvh bvh) {
+        int hits = 0;
+        for (int i = 0; i < count; i++) {
+            if (sweep(i, bvh)) hits++;
+        }
+        return hits;
+    }
+
+    // sphere bounds of all particles, minX minY minZ maxX maxY maxZ at out[o]
+    public void bounds(double[] out, int o) {
+        out[o] = out[o + 1] = out[o + 2] = Double.POSITIVE_INFINITY;
+        out[o + 3] = out[o + 4] = out[o + 5] = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            double r = radius[i];
+            for (int a = 0; a < 3; a++) {
+                double p = pos[i * 3 + a];
+                out[o + a] = Math.min(out[o + a], p - r);
+                out[o + 3 + a] = Math.max(out[o + 3 + a], p + r);
+            }
+        }
+    }
+
+    // pushes overlapping spheres of two systems apart, each side taking half
+    // of the penetration; box is other's bounds and filters out spheres that
+    // cannot reach it. Returns the number of contacts.
+    public int collide(ParticleSystem other, double[] box, int b) {
+        return collide(other, box, b, 0.5);
+    }
+
+    // the same with this side taking share of each push and other the rest;
+    // 1 leaves other where it is
+    public int collide(ParticleSystem other, double[] box, int b, double share) {
+        int contacts = 0;
+        for (int i = 0; i < count; i++) {
+            int o = i * 3;
+            double r = radius[i];
+            if (pos[o] + r < box[b] || pos[o] - r > box[b + 3]
+                || pos[o + 1] + r < box[b + 1] || pos[o + 1] - r > box[b + 4]
+                || pos[o + 2] + r < box[b + 2] || pos[o + 2] - r > box[b + 5]) {
+                continue;
+            }
+            for (int j = 0; j < other.count; j++) {
+                int q = j * 3;
+                double dx = pos[o] - other.pos[q];
+                double dy = pos[o + 1] - other.pos[q + 1];
+                double dz = pos[o + 2] - other.pos[q + 2];
+                double rr = r + other.radius[j];
+                double d2 = dx * dx + dy * dy + dz * dz;
+                if (d2 >= rr * rr || d2 == 0) continue;
+                double dist = Math.sqrt(d2);
+                double push = share * (rr - dist) / dist, back = (1 - share) * (rr - dist) / dist;
+                pos[o] += dx * push;
+                pos[o + 1] += dy * push;
+                pos[o + 2] += dz * push;
+                other.pos[q] -= dx * back;
+                other.pos[q + 1] -= dy * back;
+                other.pos[q + 2] -= dz * back;
+                contacts++;
+            }
+        }
+        return contacts;
+    }
+
+    public void constrain(int s) {
+        int a = stickA[s] * 3, b = stickB[s] * 3;
+        double dx = pos[b] - pos[a], dy = pos[b + 1] - pos[a + 1], dz = pos[b + 2] - pos[a + 2];
+        double len = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        double k = 0.5 * (len - restLength[s]) / len;
+        dx *= k;
+        dy *= k;
+        dz *= k;
+        pos[a] += dx;
+        pos[a + 1] += dy;
+        pos[a + 2] += dz;
+        pos[b] -= dx;
+        pos[b + 1] -= dy;
+        pos[b + 2] -= dz;
+    }
+
+    public void constrain() {
+        if (colorsDirty) colorSticks();
+        for (int i = 0; i < stickCount; i++) constrain(stickOrder[i]);
+    }
+
+    // XPBD projection of stick s, accumulating into lambda[s]; returns how
+    // far each end was moved
+    public double project(int s) {
+        int a = stickA[s] * 3, b = stickB[s] * 3;
+        double dx = pos[b] - pos[a], dy = pos[b + 1] - pos[a + 1], dz = pos[b + 2] - pos[a + 2];
+        double len = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (len == 0) return 0;
+        double alpha = compliance[s];
+        double dl = (restLength[s] - len - alpha * lambda[s]) / (2 + alpha);
+        lambda[s] += dl;
+        double k = -dl / len;
+        dx *= k;
+        dy *= k;
+        dz *= k;
+        pos[a] += dx;
+        pos[a + 1] += dy;
+        pos[a + 2] += dz;
+        pos[b] -= dx;
+        pos[b + 1] -= dy;
+        pos[b + 2] -= dz;
+        return Math.abs(dl);
+    }
+
+    // the sticks of one color touch disjoint particles, so they can be
+    // projected in any order or split between threads
+    public double projectColor(int c) {
+        double err = 0;
+        for (int i = colorStart[c]; i < colorStart[c + 1]; i++) {
+            err = Math.max(err, project(stickOrder[i]));
+        }
+        return err;
+    }
+
+    // Gauss-Seidel over the colors until the length error after a sweep is
+    // under tolerance; returns the number of sweeps used
+    public int solveSticks(int maxIterations, double tolerance) {
+        if (colorsDirty) colorSticks();
+        Arrays.fill(lambda, 0, stickCount, 0);
+        stickError = 0;
+        for (int it = 1; it <= maxIterations; it++) {
+            for (int c = 0; c < colorCount; c++) projectColor(c);
+            stickError = lengthError();
+            if (stickError < tolerance) return it;
+        }
+        return maxIterations;
+    }
+
+    // largest |len - rest| over all sticks, less for a compliant stick the
+    // stretch its accumulated lambda allows it, so it is what XPBD drives
+    // to 0 either way
+    double lengthError() {
+        double err = 0;
+        for (int s = 0; s < stickCount; s++) {
+            int a = stickA[s] * 3, b = stickB[s] * 3;
+            double dx = pos[b] - pos[a], dy = pos[b + 1] - pos[a + 1], dz = pos[b + 2] - pos[a + 2];
+            double len = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            err = Math.max(err, Math.abs(len - restLength[s] + compliance[s] * lambda[s]));
+        }
+        return err;
+    }
+
+    // greedy edge coloring, each stick takes the lowest color not already on
+    // either of its particles; only redone when sticks are added
+    void colorSticks() {
+        int[] color = new int[stickCount];
+        long[] used = new long[count];
+        colorCount = 0;
+        for (int s = 0; s < stickCount; s++) {
+            int c = 0;
+            while (c < 64 && (((used[stickA[s]] | used[stickB[s]]) >>> c) & 1) != 0) c++;
+            if (c == 64) {
+                throw new IllegalStateException("particle has more than 63 sticks");
+            }
+            used[stickA[s]] |= 1L << c;
+            used[stickB[s]] |= 1L << c;
+            color[s] = c;
+            colorCount = Math.max(colorCount, c + 1);
+        }
+
+        colorStart = new int[colorCount + 1];
+        for (int s = 0; s < stickCount; s++) colorStart[color[s] + 1]++;
+        for (int c = 0; c < colorCount; c++) colorStart[c + 1] += colorStart[c];
+        int[] fill = Arrays.copyOf(colorStart, colorCount);
+        for (int s = 0; s < stickCount; s++) stickOrder[fill[color[s]]++] = s;
+        colorsDirty = false;
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    public long getNodeVisits() {
+        return nodeVisits;
+    }
+
+    public long getTriangleTests() {
+        return triangleTests;
+    }
+
+    public long getTrackContacts() {
+        return trackContacts;
+    }
+
+    public void resetQueryStats() {
+        cacheHits = cacheMisses = nodeVisits = triangleTests = trackContacts = 0;
+    }
+
+    public int getColorCount() {
+        if (colorsDirty) colorSticks();
+        return colorCount;
+    }
+
+    public double getStickError() {
+        return stickError;
+    }
+}
@@ -0,0 +1,112 @@
+package racingthing;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+// Runs a World at a fixed tick rate on its own thread and publishes a
+// snapshot after every tick, so a slow frame never holds up the physics
+// and a physics spike never holds up a frame. Once started, the world
+// belongs to this thread; the FX side only reads snapshots and hands in
+// car inputs, which are applied between ticks.
+public class PhysicsThread {
+    private final World world;
+    private final Recorder recorder;
+    private final Runnable step;
+    private final Simulation simulation;
+    private final SnapshotBuffer snapshots;
+    private final Thread thread;
+    private volatile boolean running;
+
+    // 3 per car, guarded by itself
+    private final double[] pendingInput;
+    private boolean inputChanged;
+
+    public PhysicsThread(World world, double dt) {
+        this(world, dt, null);
+    }
+
+    // recorder, if any, must have been made for world with this dt; stop()
+    // closes it
+    public PhysicsThread(World world, double dt, Recorder recorder) {
+        this.world = world;
+        this.recorder = recorder;
+        this.snapshots = new SnapshotBuffer(world.getCars());
+        snapshots.publish(world.getCars(), 0);
+        this.step = recorder == null ? world::step : recorder::step;
+        this.simulation = new Simulation(this::tick, dt);
+        this.pendingInput = new double[world.getCars().size() * 3];
+        thread = new Thread(this::run, "physics");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        LockSupport.unpark(thread);
+        thread.join();
+        if (recorder != null) recorder.close();
+    }
+
+    // any thread; the car picks it up before the next tick
+    public void setInput(int car, double x, double y, double z) {
+        synchronized (pendingInput) {
+            pendingInput[car * 3] = x;
+            pendingInput[car * 3 + 1] = y;
+            pendingInput[car * 3 + 2] = z;
+            inputChanged = true;
+        }
+    }
+
+    private void applyInput() {
+        synchronized (pendingInput) {
+            if (!inputChanged) return;
+            List<Car> cars = world.getCars();
+            for (int c = 0; c < cars.size(); c++) {
+                cars.get(c).setInput(pendingInput[c * 3], pendingInput[c * 3 + 1], pendingInput[c * 3 + 2]);
+            }
+            inputChanged = false;
+        }
+    }
+
+    // publishes once per tick rather than per advance, so prev is always
+    // the tick before cur and alpha() spans one dt even right after a hitch
+    private void tick() {
+        step.run();
+        snapshots.publish(world.getCars(), simulation.getTicks() + 1);
+    }
+
+    private void run() {
+        long dtNanos = (long) (simulation.getDt() * 1e9);
+        long last = System.nanoTime();
+        while (running) {
+            long now = System.nanoTime();
+            applyInput();
+            simulation.advance((now - last) / 1e9);
+            last = now;
+            long wait = (long) ((1 - simulation.getAlpha()) * dtNanos);
+            if (wait > 0) LockSupport.parkNanos(wait);
+        }
+    }
+
+    // FX thread only
+    public WorldSnapshot latest() {
+        return snapshots.latest();
+    }
+
+    // how far past the capture of s the render clock is, in ticks clamped to
+    // 0..1; drawing at that alpha between prev and cur trails the physics by
+    // one tick but never has to extrapolate
+    public double alpha(WorldSnapshot s, long nowNanos) {
+        double a = (nowNanos - s.getCapturedNanos()) / (simulation.getDt() * 1e9);
+        return Math.max(0, Math.min(1, a));
+    }
+
+    public World getWorld() {
+        return world;
+    }
+}
@@ -0,0 +1,211 @@
+package racingthing;
+
+import java.util.Arrays;
+
+// A LinearBvh packed small for tracks too big to keep in doubles: the same
+// tree and leaf order, but every node is five ints, its box as six 16-bit
+// steps of a grid over the track's bounds plus the usual two links, and the
+// triangles are three indices each into one shared float vertex buffer,
+// with repeated corners stored once. About 40 bytes a triangle against 200
+// for the LinearBvh, and a node's box and links sit in one 20 byte run.
+//
+// Vertices are rounded to float first and the node boxes worked out again
+// from the rounded triangles, then every min is rounded down and every max
+// up onto the grid and checked once more against the decoded value, so a
+// decoded box always holds everything under it. The box tests can only
+// let more through than the exact ones, never miss a contact; the sphere
+// tests then run on the float vertices, which sit within a float's
+// rounding of the originals.
+public class QuantizedBvh {
+    // ints per node: minX | minY << 16, minZ | maxX << 16, maxY | maxZ << 16,
+    // then leaf -> first triangle, triangle count; inner -> right child, 0
+    static final int NODE = 5;
+    static final int STEPS = 0xffff;
+
+    final int[] nodes;
+    // 3 per triangle, in leaf order, indexing verts
+    final int[] tris;
+    // 3 per vertex
+    final float[] verts;
+    // the grid: a box bound q decodes to origin + q * step on its axis
+    final double originX, originY, originZ, stepX, stepY, stepZ;
+    final int nodeCount, triCount, vertexCount, depth;
+
+    public QuantizedBvh(LinearBvh bvh) {
+        nodeCount = bvh.nodeCount;
+        triCount = bvh.triCount;
+        depth = bvh.depth;
+
+        // shared vertices, keyed on the float bits
+        tris = new int[triCount * 3];
+        float[] v = new float[Math.max(9, triCount * 9)];
+        int cap = Integer.highestOneBit(Math.max(4, triCount * 3) * 2 - 1) << 1;
+        int[] table = new int[cap];
+        int n = 0;
+        for (int c = 0; c < triCount * 3; c++) {
+            float x = (float) bvh.tris[c * 3], y = (float) bvh.tris[c * 3 + 1], z = (float) bvh.tris[c * 3 + 2];
+            int bx = Float.floatToIntBits(x), by = Float.floatToIntBits(y), bz = Float.floatToIntBits(z);
+            int h = ((bx * 31 + by) * 31 + bz) * 0x9e3779b9 >>> 8 & (cap - 1);
+            while (table[h] != 0) {
+                int o = (table[h] - 1) * 3;
+                if (Float.floatToIntBits(v[o]) == bx && Float.floatToIntBits(v[o + 1]) == by
+                    && Float.floatToIntBits(v[o + 2]) == bz) {
+                    break;
+                }
+                h = (h + 1) & (cap - 1);
+            }
+            if (table[h] == 0) {
+                v[n * 3] = x;
+                v[n * 3 + 1] = y;
+                v[n * 3 + 2] = z;
+                table[h] = ++n;
+            }
+            tris[c] = table[h] - 1;
+        }
+        vertexCount = n;
+        verts = Arrays.copyOf(v, n * 3);
+
+        // boxes of the rounded triangles; children always come after their
+        // parent, so one pass from the back fills every inner node
+        double[] box = new double[nodeCount * 6];
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            int b = node * 6;
+            if (bvh.isLeaf(node)) {
+                box[b] = box[b + 1] = box[b + 2] = Double.POSITIVE_INFINITY;
+                box[b + 3] = box[b + 4] = box[b + 5] = Double.NEGATIVE_INFINITY;
+                int first = bvh.nodes[node * 2], count = bvh.nodes[node * 2 + 1];
+                for (int c = first * 3; c < (first + count) * 3; c++) {
+                    for (int a = 0; a < 3; a++) {
+                        box[b + a] = Math.min(box[b + a], verts[tris[c] * 3 + a]);
+                        box[b + 3 + a] = Math.max(box[b + 3 + a], verts[tris[c] * 3 + a]);
+                    }
+                }
+            } else {
+                int l = (node + 1) * 6, r = bvh.nodes[node * 2] * 6;
+                for (int a = 0; a < 3; a++) {
+                    box[b + a] = Math.min(box[l + a], box[r + a]);
+                    box[b + 3 + a] = Math.max(box[l + 3 + a], box[r + 3 + a]);
+                }
+            }
+        }
+
+        originX = nodeCount > 0 ? box[0] : 0;
+        originY = nodeCount > 0 ? box[1] : 0;
+        originZ = nodeCount > 0 ? box[2] : 0;
+        stepX = nodeCount > 0 ? step(originX, box[3]) : 1;
+        stepY = nodeCount > 0 ? step(originY, box[4]) : 1;
+        stepZ = nodeCount > 0 ? step(originZ, box[5]) : 1;
+
+        nodes = new int[nodeCount * NODE];
+        for (int node = 0; node < nodeCount; node++) {
+            int b = node * 6, o = node * NODE;
+            nodes[o] = down(box[b], originX, stepX) | down(box[b + 1], originY, stepY) << 16;
+            nodes[o + 1] = down(box[b + 2], originZ, stepZ) | up(box[b + 3], originX, stepX) << 16;
+            nodes[o + 2] = up(box[b + 4], originY, stepY) | up(box[b + 5], originZ, stepZ) << 16;
+            nodes[o + 3] = bvh.nodes[node * 2];
+            nodes[o + 4] = bvh.nodes[node * 2 + 1];
+        }
+    }
+
+    // straight from stored arrays, as TrackTiles reads them back
+    QuantizedBvh(int[] nodes, int[] tris, float[] verts, double originX, double originY, double originZ,
+                 double stepX, double stepY, double stepZ, int depth) {
+        this.nodes = nodes;
+        this.tris = tris;
+        this.verts = verts;
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+        this.stepX = stepX;
+        this.stepY = stepY;
+        this.stepZ = stepZ;
+        this.depth = depth;
+        nodeCount = nodes.length / NODE;
+        triCount = tris.length / 3;
+        vertexCount = verts.length / 3;
+    }
+
+    // smallest grid step whose last line still reaches max
+    private static double step(double origin, double max) {
+        double step = Math.max((max - origin) / STEPS, Double.MIN_NORMAL);
+        while (origin + STEPS * step < max) step = Math.nextUp(step);
+        return step;
+    }
+
+    // the highest grid line at or below v, as decoded
+    private static int down(double v, double origin, double step) {
+        int q = (int) Math.max(0, Math.min(STEPS, Math.floor((v - origin) / step)));
+        while (q > 0 && origin + q * step > v) q--;
+        return q;
+    }
+
+    // the lowest grid line at or above v, as decoded
+    private static int up(double v, double origin, double step) {
+        int q = (int) Math.max(0, Math.min(STEPS, Math.ceil((v - origin) / step)));
+        while (q < STEPS && origin + q * step < v) q++;
+        return q;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getTriangleCount() {
+        return triCount;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    // bytes held in the node, index and vertex arrays
+    public long getBytes() {
+        return (nodes.length + tris.length + verts.length) * 4L;
+    }
+
+    boolean isLeaf(int node) {
+        return nodes[node * NODE + 4] > 0;
+    }
+
+    boolean AABBSphereTest(int node, double x, double y, double z, double r) {
+        int b = node * NODE;
+        int lo = nodes[b], mid = nodes[b + 1], hi = nodes[b + 2];
+        if (x < originX + (lo & STEPS) * stepX - r || x > originX + (mid >>> 16) * stepX + r) return false;
+        if (y < originY + (lo >>> 16) * stepY - r || y > originY + (hi & STEPS) * stepY + r) return false;
+        if (z < originZ + (mid & STEPS) * stepZ - r || z > originZ + (hi >>> 16) * stepZ + r) return false;
+        return true;
+    }
+
+    // decoded box of a node into out[o .. o + 6], minX first as in LinearBvh
+    public double[] getBounds(int node, double[] out, int o) {
+        int b = node * NODE;
+        int lo = nodes[b], mid = nodes[b + 1], hi = nodes[b + 2];
+        out[o] = originX + (lo & STEPS) * stepX;
+        out[o + 1] = originY + (lo >>> 16) * stepY;
+        out[o + 2] = originZ + (mid & STEPS) * stepZ;
+        out[o + 3] = originX + (mid >>> 16) * stepX;
+        out[o + 4] = originY + (hi & STEPS) * stepY;
+        out[o + 5] = originZ + (hi >>> 16) * stepZ;
+        return out;
+    }
+
+    // triangle t's nine coordinates into out[o ..], the layout of LinearBvh.tris
+    void triangle(int t, double[] out, int o) {
+        for (int c = 0; c < 3; c++) {
+            int v = tris[t * 3 + c] * 3;
+            out[o + c * 3] = verts[v];
+            out[o + c * 3 + 1] = verts[v + 1];
+            out[o + c * 3 + 2] = verts[v + 2];
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("QuantizedBvh[triangles=%d, vertices=%d, nodes=%d, %.1f MB per million triangles]",
+            triCount, vertexCount, nodeCount, getBytes() / (double) Math.max(1, triCount));
+    }
+}
@@ -0,0 +1,259 @@
+package racingthing;
+
+// Ray and segment casts against a LinearBvh, for wheels, camera occlusion
+// and line of sight. A ray is an origin, a direction and a maxT, and a hit
+// is the t along the direction, so the segment a -> b is the ray from a
+// along b - a with maxT 1. Boxes are culled with a slab test on the
+// inverse direction, worked out once per ray. cast() finds the nearest hit,
+// visiting the nearer child first and skipping boxes behind the best hit so
+// far; any() stops at the first hit at all. castAll() walks the tree once
+// for a whole batch of rays, each node taking only the rays that reached
+// its parent. Triangles count from both sides. Holds its own scratch, so
+// every caller needs its own.
+public class RayCast {
+    // doubles per ray in castAll(): origin x y z, direction x y z, maxT
+    public static final int RAY = 7;
+    // doubles per hit out of castAll(): t, infinity on a miss, then the
+    // unit normal facing back along the ray
+    public static final int HIT = 4;
+
+    private int[] stack = new int[32];
+    private double[] stackT = new double[32];
+    // castAll(): every stack entry's rays are lists[stackFrom .. stackTo]
+    private int[] stackFrom = new int[32], stackTo = new int[32];
+    private int[] lists = new int[64];
+    // castAll(): 3 per ray, inverse direction, and the nearest triangle
+    private double[] inverse = new double[48];
+    private int[] hitTris = new int[16];
+
+    private double hitT = Double.POSITIVE_INFINITY;
+    private int hitTriangle = -1;
+    private final double[] hitNormal = new double[3];
+    long nodeVisits, triangleTests;
+
+    // nearest hit within maxT, false if there is none; getT(), getTriangle()
+    // and getNormal() then describe it
+    public boolean cast(LinearBvh bvh, double ox, double oy, double oz, double dx, double dy, double dz,
+                        double maxT) {
+        fit(bvh);
+        double ix = 1 / dx, iy = 1 / dy, iz = 1 / dz;
+        double best = maxT;
+        int hit = -1;
+        int top = 0;
+        stack[top] = 0;
+        stackT[top++] = bvh.AABBRayEntry(0, ox, oy, oz, ix, iy, iz, best);
+        while (top > 0) {
+            int node = stack[--top];
+            // infinity for a miss fails this too
+            if (!(stackT[top] < best)) continue;
+            nodeVisits++;
+            if (bvh.isLeaf(node)) {
+                int first = bvh.nodes[node * 2], n = bvh.nodes[node * 2 + 1];
+                triangleTests += n;
+                for (int t = first; t < first + n; t++) {
+                    double h = intersect(ox, oy, oz, dx, dy, dz, bvh.tris, t * 9, best);
+                    if (h < best) {
+                        best = h;
+                        hit = t;
+                    }
+                }
+            } else {
+                int left = node + 1, right = bvh.nodes[node * 2];
+                double tl = bvh.AABBRayEntry(left, ox, oy, oz, ix, iy, iz, best);
+                double tr = bvh.AABBRayEntry(right, ox, oy, oz, ix, iy, iz, best);
+                // the nearer one on top, so it is searched first
+                boolean leftFirst = tl <= tr;
+                stack[top] = leftFirst ? right : left;
+                stackT[top++] = leftFirst ? tr : tl;
+                stack[top] = leftFirst ? left : right;
+                stackT[top++] = leftFirst ? tl : tr;
+            }
+        }
+        return found(bvh, hit, best, dx, dy, dz);
+    }
+
+    // whether anything at all is hit within maxT; on a hit getT() and the
+    // rest describe whichever triangle was found first, not the nearest
+    public boolean any(LinearBvh bvh, double ox, double oy, double oz, double dx, double dy, double dz,
+                       double maxT) {
+        fit(bvh);
+        double ix = 1 / dx, iy = 1 / dy, iz = 1 / dz;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            nodeVisits++;
+            if (bvh.AABBRayEntry(node, ox, oy, oz, ix, iy, iz, maxT) == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            if (bvh.isLeaf(node)) {
+                int first = bvh.nodes[node * 2], n = bvh.nodes[node * 2 + 1];
+                for (int t = first; t < first + n; t++) {
+                    triangleTests++;
+                    double h = intersect(ox, oy, oz, dx, dy, dz, bvh.tris, t * 9, maxT);
+                    if (h < maxT) return found(bvh, t, h, dx, dy, dz);
+                }
+            } else {
+                stack[top++] = bvh.nodes[node * 2];
+                stack[top++] = node + 1;
+            }
+        }
+        return found(bvh, -1, maxT, dx, dy, dz);
+    }
+
+    // nearest hit on the segment a -> b, getT() as a fraction of it
+    public boolean segment(LinearBvh bvh, double ax, double ay, double az, double bx, double by, double bz) {
+        return cast(bvh, ax, ay, az, bx - ax, by - ay, bz - az, 1);
+    }
+
+    // whether the track is in the way between a and b
+    public boolean blocked(LinearBvh bvh, double ax, double ay, double az, double bx, double by, double bz) {
+        return any(bvh, ax, ay, az, bx - ax, by - ay, bz - az, 1);
+    }
+
+    // Nearest hits of n rays, RAY doubles each in rays, written HIT doubles
+    // each to hits; returns how many hit. The same t as n calls of cast(),
+    // in one walk: a node tests only the rays that reached its parent, each
+    // against its own best hit so far.
+    public int castAll(LinearBvh bvh, double[] rays, int n, double[] hits) {
+        fit(bvh);
+        if (inverse.length < n * 3) {
+            inverse = new double[n * 3];
+            hitTris = new int[n];
+        }
+        // a node's list is written above its parent's and the ones below it
+        // on the stack; popping an entry frees everything above its list
+        if (lists.length < n * (bvh.depth + 2)) lists = new int[n * (bvh.depth + 2)];
+        for (int r = 0; r < n; r++) {
+            int o = r * RAY;
+            inverse[r * 3] = 1 / rays[o + 3];
+            inverse[r * 3 + 1] = 1 / rays[o + 4];
+            inverse[r * 3 + 2] = 1 / rays[o + 5];
+            hits[r * HIT] = rays[o + 6];
+            hitTris[r] = -1;
+            lists[r] = r;
+        }
+        int top = 0;
+        stack[top] = 0;
+        stackFrom[top] = 0;
+        stackTo[top++] = n;
+        while (top > 0) {
+            int node = stack[--top], from = stackFrom[top], to = stackTo[top];
+            nodeVisits++;
+            int live = to;
+            for (int k = from; k < to; k++) {
+                int r = lists[k], o = r * RAY, i = r * 3;
+                double entry = bvh.AABBRayEntry(node, rays[o], rays[o + 1], rays[o + 2],
+                    inverse[i], inverse[i + 1], inverse[i + 2], hits[r * HIT]);
+                if (entry != Double.POSITIVE_INFINITY) lists[live++] = r;
+            }
+            if (live == to) continue;
+            if (bvh.isLeaf(node)) {
+                int first = bvh.nodes[node * 2], count = bvh.nodes[node * 2 + 1];
+                triangleTests += (long) count * (live - to);
+                for (int k = to; k < live; k++) {
+                    int r = lists[k], o = r * RAY;
+                    for (int t = first; t < first + count; t++) {
+                        double h = intersect(rays[o], rays[o + 1], rays[o + 2], rays[o + 3], rays[o + 4], rays[o + 5],
+                            bvh.tris, t * 9, hits[r * HIT]);
+                        if (h < hits[r * HIT]) {
+                            hits[r * HIT] = h;
+                            hitTris[r] = t;
+                        }
+                    }
+                }
+            } else {
+                stack[top] = bvh.nodes[node * 2];
+                stackFrom[top] = to;
+                stackTo[top++] = live;
+                stack[top] = node + 1;
+                stackFrom[top] = to;
+                stackTo[top++] = live;
+            }
+        }
+        int hitCount = 0;
+        for (int r = 0; r < n; r++) {
+            int o = r * RAY, h = r * HIT;
+            if (hitTris[r] < 0) {
+                hits[h] = Double.POSITIVE_INFINITY;
+                hits[h + 1] = hits[h + 2] = hits[h + 3] = 0;
+                continue;
+            }
+            normal(bvh.tris, hitTris[r] * 9, rays[o + 3], rays[o + 4], rays[o + 5], hits, h + 1);
+            hitCount++;
+        }
+        return hitCount;
+    }
+
+    private void fit(LinearBvh bvh) {
+        if (stack.length < bvh.depth + 2) {
+            stack = new int[bvh.depth + 2];
+            stackT = new double[bvh.depth + 2];
+            stackFrom = new int[bvh.depth + 2];
+            stackTo = new int[bvh.depth + 2];
+        }
+    }
+
+    private boolean found(LinearBvh bvh, int triangle, double t, double dx, double dy, double dz) {
+        hitTriangle = triangle;
+        if (triangle < 0) {
+            hitT = Double.POSITIVE_INFINITY;
+            return false;
+        }
+        hitT = t;
+        normal(bvh.tris, triangle * 9, dx, dy, dz, hitNormal, 0);
+        return true;
+    }
+
+    // Moller-Trumbore from either side: t of the hit if it is in [0, maxT),
+    // infinity otherwise. Written so a NaN from a degenerate triangle misses.
+    static double intersect(double ox, double oy, double oz, double dx, double dy, double dz,
+                            double[] tri, int o, double maxT) {
+        double e1x = tri[o + 3] - tri[o], e1y = tri[o + 4] - tri[o + 1], e1z = tri[o + 5] - tri[o + 2];
+        double e2x = tri[o + 6] - tri[o], e2y = tri[o + 7] - tri[o + 1], e2z = tri[o + 8] - tri[o + 2];
+        double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+        double inv = 1 / (e1x * px + e1y * py + e1z * pz);
+        double sx = ox - tri[o], sy = oy - tri[o + 1], sz = oz - tri[o + 2];
+        double u = (sx * px + sy * py + sz * pz) * inv;
+        if (!(u >= 0 && u <= 1)) return Double.POSITIVE_INFINITY;
+        double qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+        double v = (dx * qx + dy * qy + dz * qz) * inv;
+        if (!(v >= 0 && u + v <= 1)) return Double.POSITIVE_INFINITY;
+        double t = (e2x * qx + e2y * qy + e2z * qz) * inv;
+        return t >= 0 && t < maxT ? t : Double.POSITIVE_INFINITY;
+    }
+
+    // unit normal of the triangle at o, turned to face against d
+    static void normal(double[] tri, int o, double dx, double dy, double dz, double[] out, int at) {
+        double ux = tri[o + 3] - tri[o], uy = tri[o + 4] - tri[o + 1], uz = tri[o + 5] - tri[o + 2];
+        double vx = tri[o + 6] - tri[o], vy = tri[o + 7] - tri[o + 1], vz = tri[o + 8] - tri[o + 2];
+        double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+        double len = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (nx * dx + ny * dy + nz * dz > 0) len = -len;
+        out[at] = nx / len;
+        out[at + 1] = ny / len;
+        out[at + 2] = nz / len;
+    }
+
+    public double getT() {
+        return hitT;
+    }
+
+    // index into the BVH's leaf ordered triangles, -1 after a miss
+    public int getTriangle() {
+        return hitTriangle;
+    }
+
+    public double[] getNormal(double[] out, int o) {
+        System.arraycopy(hitNormal, 0, out, o, 3);
+        return out;
+    }
+
+    public long getNodeVisits() {
+        return nodeVisits;
+    }
+
+    public long getTriangleTests() {
+        return triangleTests;
+    }
+}
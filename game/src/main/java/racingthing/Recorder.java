@@ -0,0 +1,236 @@
+package racingthing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Binary session log of a World. The header is enough to rebuild the world,
+// input records say when a car's input changed, and keyframes hold every
+// particle's pos and prev bit for bit, so Replay can rerun the session and
+// name the first step and particle that came out different.
+//
+// The stepping thread only encodes records and copies them into a ring; a
+// writer thread drains the ring into the file. A full ring makes the
+// stepping thread wait (counted in getStalls()) rather than drop records.
+//
+// layout, little endian, strings as int byte length + UTF-8:
+//   int    magic 'RTRL', version
+//   byte[32] sha-256 of the track OBJ
+//   int    split ordinal, max leaf size, bins
+//   double traversal cost, intersection cost
+//   double dt, int keyframe interval (in steps), car count
+//   string track OBJ path, int track kind (0 full, 1 compact, 2 tiled),
+//   double tile size (0 unless tiled)
+//   per car: string collision data path, string wheel data path ("" for
+//            none), double start x y z
+// then records, each a type byte and the step count before which (input) or
+// after which (keyframe, end) it applies:
+//   'I' long step, int car, double x y z
+//   'K' long step, per car: int particles, double[n * 3] pos, double[n * 3] prev
+//   'E' long step
+public class Recorder implements AutoCloseable {
+    static final int MAGIC = 0x5254524c;
+    static final int VERSION = 5;
+    static final byte INPUT = 'I', KEYFRAME = 'K', END = 'E';
+
+    private final World world;
+    private final int keyframeInterval;
+    private final FileChannel channel;
+    private final Thread writer;
+
+    // written up to head by the stepping thread, drained up to tail by the
+    // writer; both only grow, the ring index is the low bits
+    private final ByteBuffer ring;
+    private final AtomicLong head = new AtomicLong(), tail = new AtomicLong();
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    // stepping thread owned
+    private ByteBuffer record = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+    private final double[] lastInput, input = new double[3];
+    private long steps;
+    private long stalls;
+
+    public Recorder(Path file, World world, String trackPath, BvhBuilder builder,
+                    double dt, int keyframeInterval) throws IOException {
+        this(file, world, trackPath, builder, dt, keyframeInterval, 1 << 20);
+    }
+
+    public Recorder(Path file, World world, String trackPath, BvhBuilder builder,
+                    double dt, int keyframeInterval, int ringSize) throws IOException {
+        if (Integer.bitCount(ringSize) != 1) throw new IllegalArgumentException("ring size must be a power of two");
+        this.world = world;
+        this.keyframeInterval = keyframeInterval;
+        ring = ByteBuffer.allocateDirect(ringSize);
+        List<Car> cars = world.getCars();
+        lastInput = new double[cars.size() * 3];
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+        writer = new Thread(this::drain, "recorder");
+        writer.setDaemon(true);
+        writer.start();
+
+        ensure(256);
+        record.putInt(MAGIC).putInt(VERSION);
+        record.put(BvhCache.hash(Path.of(trackPath)));
+        record.putInt(builder.split.ordinal()).putInt(builder.maxLeafSize).putInt(builder.bins);
+        record.putDouble(builder.traversalCost).putDouble(builder.intersectionCost);
+        record.putDouble(dt).putInt(keyframeInterval).putInt(cars.size());
+        putString(trackPath);
+        CollisionMesh track = world.getTrack();
+        ensure(12);
+        record.putInt(track.isTiled() ? 2 : track.isCompact() ? 1 : 0);
+        record.putDouble(track.isTiled() ? track.getTiles().getTileSize() : 0);
+        for (Car car : cars) {
+            putString(car.getCollisionDataPath());
+            putString(car.getWheelDataPath() == null ? "" : car.getWheelDataPath());
+            ensure(24);
+            record.putDouble(car.getStartPos().getX()).putDouble(car.getStartPos().getY())
+                .putDouble(car.getStartPos().getZ());
+        }
+        push();
+        keyframe();
+    }
+
+    // one World.step with its inputs and, every keyframeInterval steps, a
+    // keyframe after it; use in place of world::step
+    public void step() {
+        List<Car> cars = world.getCars();
+        for (int c = 0; c < cars.size(); c++) {
+            cars.get(c).getInput(input, 0);
+            int o = c * 3;
+            if (Double.doubleToRawLongBits(input[0]) != Double.doubleToRawLongBits(lastInput[o])
+                || Double.doubleToRawLongBits(input[1]) != Double.doubleToRawLongBits(lastInput[o + 1])
+                || Double.doubleToRawLongBits(input[2]) != Double.doubleToRawLongBits(lastInput[o + 2])) {
+                System.arraycopy(input, 0, lastInput, o, 3);
+                ensure(37);
+                record.put(INPUT).putLong(steps).putInt(c).putDouble(input[0]).putDouble(input[1]).putDouble(input[2]);
+                push();
+            }
+        }
+        world.step();
+        steps++;
+        if (steps % keyframeInterval == 0) keyframe();
+    }
+
+    private void keyframe() {
+        ensure(9);
+        record.put(KEYFRAME).putLong(steps);
+        for (Car car : world.getCars()) {
+            ParticleSystem p = car.getParticles();
+            int n = p.count * 3;
+            ensure(4 + n * 16);
+            record.putInt(p.count);
+            for (int i = 0; i < n; i++) record.putDouble(p.pos[i]);
+            for (int i = 0; i < n; i++) record.putDouble(p.prev[i]);
+        }
+        push();
+    }
+
+    // last keyframe unless one was just taken, the end marker, then waits
+    // for the writer to get everything to disk
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        if (steps % keyframeInterval != 0) keyframe();
+        ensure(9);
+        record.put(END).putLong(steps);
+        push();
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) throw failure;
+    }
+
+    private void putString(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        ensure(4 + b.length);
+        record.putInt(b.length).put(b);
+    }
+
+    private void ensure(int bytes) {
+        if (record.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(record.capacity() * 2, record.position() + bytes))
+                .order(ByteOrder.LITTLE_ENDIAN);
+            record.flip();
+            record = grown.put(record);
+        }
+    }
+
+    // copies the staged record into the ring, in as many pieces as the ring
+    // has room for, and publishes each by moving head
+    private void push() {
+        byte[] src = record.array();
+        int n = record.position(), done = 0, size = ring.capacity();
+        while (done < n) {
+            if (failure != null) throw new UncheckedIOException(failure);
+            long h = head.get();
+            int room = (int) (size - (h - tail.get()));
+            if (room == 0) {
+                stalls++;
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(100_000);
+                continue;
+            }
+            int at = (int) (h & (size - 1));
+            int len = Math.min(Math.min(n - done, room), size - at);
+            ring.put(at, src, done, len);
+            head.set(h + len);
+            done += len;
+        }
+        record.clear();
+    }
+
+    private void drain() {
+        ByteBuffer view = ring.duplicate();
+        int size = ring.capacity();
+        try {
+            while (true) {
+                // closed is read first, so a head seen after it includes
+                // everything pushed before close()
+                boolean last = closed;
+                long t = tail.get(), h = head.get();
+                if (h == t) {
+                    if (last) return;
+                    LockSupport.parkNanos(1_000_000);
+                    continue;
+                }
+                int at = (int) (t & (size - 1));
+                int len = (int) Math.min(h - t, size - at);
+                view.limit(at + len).position(at);
+                while (view.hasRemaining()) channel.write(view);
+                tail.set(t + len);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    // bytes handed to the writer so far
+    public long getBytes() {
+        return head.get();
+    }
+
+    // times the stepping thread found the ring full and had to wait
+    public long getStalls() {
+        return stalls;
+    }
+}
@@ -0,0 +1,137 @@
+package racingthing;
+
+import javafx.geometry.Point3D;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+// Reruns a Recorder log headless, as fast as the steps go, and compares
+// every keyframe bit for bit. Exits 1 at the first particle that differs,
+// naming the step, car, particle and both values.
+public class Replay {
+    private final MappedByteBuffer log;
+    private final World world;
+    private final double dt;
+    private long steps;
+    private int keyframes;
+
+    public Replay(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            log = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        log.order(ByteOrder.LITTLE_ENDIAN);
+        if (log.getInt() != Recorder.MAGIC || log.getInt() != Recorder.VERSION) {
+            throw new IOException(file + " is not a version " + Recorder.VERSION + " recording");
+        }
+        byte[] hash = new byte[32];
+        log.get(hash);
+        BvhBuilder builder = new BvhBuilder(BvhBuilder.Split.values()[log.getInt()], log.getInt(), log.getInt(),
+            log.getDouble(), log.getDouble());
+        dt = log.getDouble();
+        log.getInt();
+        int carCount = log.getInt();
+
+        String trackPath = getString();
+        if (!Arrays.equals(hash, BvhCache.hash(Path.of(trackPath)))) {
+            throw new IOException(trackPath + " changed since the recording");
+        }
+        int kind = log.getInt();
+        double tileSize = log.getDouble();
+        if (kind == 2) {
+            world = new World(CollisionMesh.tiled(trackPath, builder, tileSize));
+        } else {
+            CollisionMesh track = CollisionMesh.load(trackPath, builder);
+            world = new World(kind == 1 ? track.compact() : track);
+        }
+        for (int c = 0; c < carCount; c++) {
+            String collisionDataPath = getString(), wheelDataPath = getString();
+            world.addCar(new Point3D(log.getDouble(), log.getDouble(), log.getDouble()), collisionDataPath,
+                wheelDataPath.isEmpty() ? null : wheelDataPath);
+        }
+    }
+
+    private String getString() {
+        byte[] b = new byte[log.getInt()];
+        log.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // runs the whole log; null when every keyframe matched, otherwise what
+    // differed first
+    public String run() {
+        List<Car> cars = world.getCars();
+        while (log.hasRemaining()) {
+            byte type = log.get();
+            long at = log.getLong();
+            while (steps < at) {
+                world.step();
+                steps++;
+            }
+            if (type == Recorder.INPUT) {
+                cars.get(log.getInt()).setInput(log.getDouble(), log.getDouble(), log.getDouble());
+            } else if (type == Recorder.KEYFRAME) {
+                String diff = check(cars);
+                if (diff != null) return diff;
+                keyframes++;
+            } else if (type == Recorder.END) {
+                return null;
+            } else {
+                throw new IllegalStateException("unknown record '" + (char) type + "' after step " + steps);
+            }
+        }
+        throw new IllegalStateException("log ends after step " + steps + " without an end record");
+    }
+
+    private String check(List<Car> cars) {
+        for (int c = 0; c < cars.size(); c++) {
+            ParticleSystem p = cars.get(c).getParticles();
+            int n = log.getInt();
+            if (n != p.count) return String.format("step %d car %d: %d particles, recorded %d", steps, c, p.count, n);
+            for (int field = 0; field < 2; field++) {
+                double[] now = field == 0 ? p.pos : p.prev;
+                for (int i = 0; i < n * 3; i++) {
+                    double was = log.getDouble();
+                    if (Double.doubleToRawLongBits(was) != Double.doubleToRawLongBits(now[i])) {
+                        return String.format("step %d car %d particle %d %s %c: %s, recorded %s", steps, c, i / 3,
+                            field == 0 ? "pos" : "prev", "xyz".charAt(i % 3), now[i], was);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public int getKeyframes() {
+        return keyframes;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: Replay <recording>");
+            System.exit(2);
+        }
+        long t0 = System.nanoTime();
+        Replay replay = new Replay(Path.of(args[0]));
+        long t1 = System.nanoTime();
+        System.out.printf("loaded %d cars in %.1f ms%n", replay.world.getCars().size(), (t1 - t0) / 1e6);
+
+        String diff = replay.run();
+        double wall = (System.nanoTime() - t1) / 1e9;
+        System.out.printf("%d steps in %.3f s, %.1fx real time, %d keyframes matched%n",
+            replay.steps, wall, replay.steps * replay.dt / wall, replay.keyframes);
+        if (diff != null) {
+            System.out.println("diverged at " + diff);
+            System.exit(1);
+        }
+    }
+}
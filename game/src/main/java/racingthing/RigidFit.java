@@ -0,0 +1,144 @@
+package racingthing;
+
+public class RigidFit {
+    double tolerance = 1e-12;
+    int maxSweeps = 16;
+
+    // w, x, y, z
+    private final double[] quat = { 1, 0, 0, 0 };
+    private final double[] translation = new double[3];
+    private final double[][] k = new double[4][4];
+    private final double[][] v = new double[4][4];
+    private double rmsError;
+    private int sweeps;
+
+    // ref holds reference offsets around their centroid, cur the current
+    // positions, both 3 doubles per point. Finds the rotation q and
+    // translation t minimising |q * ref + t - cur|.
+    public void fit(double[] ref, double[] cur, int n) {
+        double cx = 0, cy = 0, cz = 0;
+        for (int i = 0; i < n; i++) {
+            cx += cur[i * 3];
+            cy += cur[i * 3 + 1];
+            cz += cur[i * 3 + 2];
+        }
+        cx /= n;
+        cy /= n;
+        cz /= n;
+
+        double Sxx=0, Sxy=0, Sxz=0;
+        double Syx=0, Syy=0, Syz=0;
+        double Szx=0, Szy=0, Szz=0;
+        double norms = 0;
+        for (int i = 0; i < n; i++) {
+            double px = ref[i * 3], py = ref[i * 3 + 1], pz = ref[i * 3 + 2];
+            double qx = cur[i * 3] - cx, qy = cur[i * 3 + 1] - cy, qz = cur[i * 3 + 2] - cz;
+            Sxx += px*qx; Sxy += px*qy; Sxz += px*qz;
+            Syx += py*qx; Syy += py*qy; Syz += py*qz;
+            Szx += pz*qx; Szy += pz*qy; Szz += pz*qz;
+            norms += px*px + py*py + pz*pz + qx*qx + qy*qy + qz*qz;
+        }
+        double[][] K = k;
+        K[0][0]=Sxx+Syy+Szz; K[0][1]=Syz-Szy;   K[0][2]=Szx-Sxz;   K[0][3]=Sxy-Syx;
+        K[1][0]=K[0][1];      K[1][1]=Sxx-Syy-Szz; K[1][2]=Sxy+Syx;   K[1][3]=Szx+Sxz;
+        K[2][0]=K[0][2];      K[2][1]=K[1][2];      K[2][2]=-Sxx+Syy-Szz;K[2][3]=Syz+Szy;
+        K[3][0]=K[0][3];      K[3][1]=K[1][3];      K[3][2]=K[2][3];      K[3][3]=-Sxx-Syy+Szz;
+
+        double lambda = largestEigenvector();
+        rmsError = Math.sqrt(Math.max(0, norms - 2 * lambda) / n);
+
+        translation[0] = cx;
+        translation[1] = cy;
+        translation[2] = cz;
+    }
+
+    // cyclic Jacobi on the symmetric Horn matrix, picks the eigenvector of the
+    // largest eigenvalue and keeps it on the same hemisphere as the last fit
+    private double largestEigenvector() {
+        double[][] a = k;
+        for (int r = 0; r < 4; r++) {
+            for (int c = 0; c < 4; c++) v[r][c] = r == c ? 1 : 0;
+        }
+
+        double scale = 0;
+        for (int r = 0; r < 4; r++) {
+            for (int c = 0; c < 4; c++) scale += a[r][c] * a[r][c];
+        }
+        sweeps = 0;
+        while (sweeps < maxSweeps) {
+            double off = 0;
+            for (int p = 0; p < 3; p++) {
+                for (int q = p + 1; q < 4; q++) off += a[p][q] * a[p][q];
+            }
+            if (off <= tolerance * tolerance * scale) break;
+            sweeps++;
+
+            for (int p = 0; p < 3; p++) {
+                for (int q = p + 1; q < 4; q++) {
+                    double apq = a[p][q];
+                    if (apq == 0) continue;
+                    double theta = (a[q][q] - a[p][p]) / (2 * apq);
+                    double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+                    if (theta == 0) t = 1;
+                    double c = 1 / Math.sqrt(t * t + 1), s = t * c;
+                    for (int r = 0; r < 4; r++) {
+                        double arp = a[r][p], arq = a[r][q];
+                        a[r][p] = c * arp - s * arq;
+                        a[r][q] = s * arp + c * arq;
+                    }
+                    for (int r = 0; r < 4; r++) {
+                        double apr = a[p][r], aqr = a[q][r];
+                        a[p][r] = c * apr - s * aqr;
+                        a[q][r] = s * apr + c * aqr;
+                    }
+                    for (int r = 0; r < 4; r++) {
+                        double vrp = v[r][p], vrq = v[r][q];
+                        v[r][p] = c * vrp - s * vrq;
+                        v[r][q] = s * vrp + c * vrq;
+                    }
+                }
+            }
+        }
+
+        int best = 0;
+        for (int i = 1; i < 4; i++) {
+            if (a[i][i] > a[best][best]) best = i;
+        }
+        double dot = 0, norm = 0;
+        for (int i = 0; i < 4; i++) {
+            dot += v[i][best] * quat[i];
+            norm += v[i][best] * v[i][best];
+        }
+        norm = (dot < 0 ? -1 : 1) / Math.sqrt(norm);
+        for (int i = 0; i < 4; i++) quat[i] = v[i][best] * norm;
+        return a[best][best];
+    }
+
+    public double[] getQuaternion(double[] out) {
+        return getQuaternion(out, 0);
+    }
+
+    public double[] getQuaternion(double[] out, int o) {
+        System.arraycopy(quat, 0, out, o, 4);
+        return out;
+    }
+
+    // ref is centred, so the translation is the centroid of the current points
+    // and doubles as the rotation pivot
+    public double[] getTranslation(double[] out) {
+        return getTranslation(out, 0);
+    }
+
+    public double[] getTranslation(double[] out, int o) {
+        System.arraycopy(translation, 0, out, o, 3);
+        return out;
+    }
+
+    public double getRmsError() {
+        return rmsError;
+    }
+
+    public int getSweeps() {
+        return sweeps;
+    }
+}
@@ -0,0 +1,66 @@
+package racingthing;
+
+// Fixed timestep loop around one step. A step is always one tick of the
+// car physics, whose gravity, damping and springs are all per step, so dt
+// only says how much real time a tick stands for; a finer simulation means
+// a smaller dt and more ticks, not more steps per tick.
+public class Simulation {
+    private final Runnable step;
+    private final double dt;
+    private final int maxTicksPerAdvance;
+
+    private double accumulator;
+    private long ticks;
+
+    public Simulation(Runnable step, double dt) {
+        this(step, dt, 8);
+    }
+
+    public Simulation(Runnable step, double dt, int maxTicksPerAdvance) {
+        this.step = step;
+        this.dt = dt;
+        this.maxTicksPerAdvance = maxTicksPerAdvance;
+    }
+
+    // feeds real elapsed time in and runs as many fixed ticks as it covers,
+    // dropping time past maxTicksPerAdvance so a stall can't snowball
+    public int advance(double seconds) {
+        accumulator += seconds;
+        int ran = 0;
+        while (accumulator >= dt && ran < maxTicksPerAdvance) {
+            tick();
+            accumulator -= dt;
+            ran++;
+        }
+        if (ran == maxTicksPerAdvance && accumulator >= dt) {
+            accumulator %= dt;
+        }
+        return ran;
+    }
+
+    public void run(long n) {
+        for (long i = 0; i < n; i++) tick();
+    }
+
+    public void tick() {
+        step.run();
+        ticks++;
+    }
+
+    // fraction of a tick left in the accumulator, for render interpolation
+    public double getAlpha() {
+        return accumulator / dt;
+    }
+
+    public double getDt() {
+        return dt;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public double getSimulatedTime() {
+        return ticks * dt;
+    }
+}
@@ -0,0 +1,49 @@
+package racingthing;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Lock free triple buffer of WorldSnapshots between one writer (the physics
+// thread) and one reader (the FX thread). The writer fills its back buffer
+// and swaps it with the middle one; the reader swaps its front buffer with
+// the middle one only when something new was published. Neither side ever
+// waits, and neither ever sees a buffer the other is writing.
+public class SnapshotBuffer {
+    private static final int FRESH = 4;
+
+    private final WorldSnapshot[] buffers = new WorldSnapshot[3];
+    // index of the middle buffer, | FRESH when the reader hasn't taken it
+    private final AtomicInteger middle = new AtomicInteger(1);
+    // writer owned
+    private int back = 0;
+    private final double[] last;
+    private boolean published;
+    // reader owned
+    private int front = 2;
+
+    public SnapshotBuffer(List<Car> cars) {
+        for (int i = 0; i < 3; i++) buffers[i] = new WorldSnapshot(cars);
+        last = new double[buffers[0].cur.length];
+    }
+
+    // writer: captures the cars as they are now and hands the result over;
+    // the first call has nothing older, so its prev is the same state
+    public void publish(List<Car> cars, long tick) {
+        WorldSnapshot s = buffers[back];
+        long now = System.nanoTime();
+        if (!published) {
+            s.capture(cars, last, tick, now);
+            published = true;
+        }
+        s.capture(cars, last, tick, now);
+        back = middle.getAndSet(back | FRESH) & 3;
+    }
+
+    // reader: the newest published snapshot, valid until the next call
+    public WorldSnapshot latest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & 3;
+        }
+        return buffers[front];
+    }
+}
@@ -0,0 +1,23 @@
+package racingthing;
+
+public class Stick {
+    private final ParticleSystem system;
+    private final int index;
+
+    public Stick(ParticleSystem system, CollisionSphere a, CollisionSphere b) {
+        this(system, a, b, 0);
+    }
+
+    public Stick(ParticleSystem system, CollisionSphere a, CollisionSphere b, double compliance) {
+        this.system = system;
+        this.index = system.addStick(a.index, b.index, compliance);
+    }
+
+    public double getRestLength() {
+        return system.restLength[index];
+    }
+
+    public void constrain() {
+        system.constrain(index);
+    }
+}
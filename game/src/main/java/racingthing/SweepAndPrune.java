@@ -0,0 +1,79 @@
+package racingthing;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Car vs car broad phase: sort and sweep over each car's sphere bounds along
+// x. The sorted order is kept between ticks and fixed up with an insertion
+// sort, which is close to linear because cars rarely swap places within a
+// tick. Overlapping pairs are listed lower car index first.
+public class SweepAndPrune {
+    // 6 per car, in car index order
+    double[] boxes = new double[6 * 16];
+    // car indices sorted by box min x
+    int[] order = new int[16];
+    int count;
+
+    // 2 per overlapping pair
+    int[] pairs = new int[32];
+    int pairCount;
+
+    public void update(List<Car> cars) {
+        int n = cars.size();
+        if (n > order.length) {
+            boxes = Arrays.copyOf(boxes, n * 12);
+            order = Arrays.copyOf(order, n * 2);
+        }
+        for (int i = count; i < n; i++) order[i] = i;
+        count = n;
+        for (int i = 0; i < n; i++) {
+            cars.get(i).getParticles().bounds(boxes, i * 6);
+        }
+
+        for (int i = 1; i < n; i++) {
+            int c = order[i];
+            double key = boxes[c * 6];
+            int j = i - 1;
+            while (j >= 0 && boxes[order[j] * 6] > key) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = c;
+        }
+
+        pairCount = 0;
+        for (int i = 0; i < n; i++) {
+            int a = order[i] * 6;
+            double maxX = boxes[a + 3];
+            for (int j = i + 1; j < n && boxes[order[j] * 6] <= maxX; j++) {
+                int b = order[j] * 6;
+                if (boxes[a + 1] > boxes[b + 4] || boxes[b + 1] > boxes[a + 4]
+                    || boxes[a + 2] > boxes[b + 5] || boxes[b + 2] > boxes[a + 5]) {
+                    continue;
+                }
+                addPair(Math.min(order[i], order[j]), Math.max(order[i], order[j]));
+            }
+        }
+    }
+
+    private void addPair(int a, int b) {
+        if (pairCount * 2 == pairs.length) {
+            pairs = Arrays.copyOf(pairs, pairs.length * 2);
+        }
+        pairs[pairCount * 2] = a;
+        pairs[pairCount * 2 + 1] = b;
+        pairCount++;
+    }
+
+    public int getPairCount() {
+        return pairCount;
+    }
+
+    public int getPairA(int p) {
+        return pairs[p * 2];
+    }
+
+    public int getPairB(int p) {
+        return pairs[p * 2 + 1];
+    }
+}
@@ -0,0 +1,134 @@
+package racingthing;
+
+import java.util.Arrays;
+
+// Track render geometry split at load time into chunks on an x/z grid, by
+// triangle centroid. Each chunk keeps its bounds and, per level of detail,
+// the source triangles it draws. LOD 0 is every triangle; LOD l snaps every
+// vertex onto the first vertex of its cell in a grid of lodCellSizes[l - 1]
+// and drops the triangles that collapse. Nothing here touches JavaFX, so the
+// split and the per frame choice can run without a GPU.
+public class TrackChunks {
+    final ObjModel model;
+    final double chunkSize;
+    // per LOD the position index each vertex is drawn at, null for LOD 0
+    final int[][] vertexMaps;
+
+    // 6 per chunk, min xyz then max xyz
+    final double[] bounds;
+    // per chunk, per LOD, the model triangles it draws
+    final int[][][] tris;
+    final int chunkCount;
+
+    // a chunk at a distance past lodDistances[l] is drawn at LOD l + 1 and
+    // past maxDistance not at all
+    double[] lodDistances = { 96, 192 };
+    double maxDistance = 400;
+
+    public TrackChunks(ObjModel model, double chunkSize, double... lodCellSizes) {
+        this.model = model;
+        this.chunkSize = chunkSize;
+
+        vertexMaps = new int[lodCellSizes.length + 1][];
+        for (int l = 0; l < lodCellSizes.length; l++) {
+            vertexMaps[l + 1] = cluster(model, lodCellSizes[l]);
+        }
+
+        // triangles bucketed by grid cell, empty cells dropped
+        TriangleGrid grid = new TriangleGrid(model, chunkSize);
+        int[] cellStart = grid.cellStart, byCell = grid.byCell;
+
+        int n = 0;
+        for (int c = 0; c < grid.getCellCount(); c++) {
+            if (cellStart[c + 1] > cellStart[c]) n++;
+        }
+        chunkCount = n;
+        bounds = new double[n * 6];
+        tris = new int[n][][];
+        n = 0;
+        for (int c = 0; c < grid.getCellCount(); c++) {
+            if (cellStart[c + 1] == cellStart[c]) continue;
+            int[] full = Arrays.copyOfRange(byCell, cellStart[c], cellStart[c + 1]);
+            tris[n] = new int[vertexMaps.length][];
+            tris[n][0] = full;
+            for (int l = 1; l < vertexMaps.length; l++) {
+                tris[n][l] = surviving(full, vertexMaps[l]);
+            }
+            BvhBuilder.empty(bounds, n * 6);
+            for (int t : full) {
+                for (int k = t * 3; k < t * 3 + 3; k++) {
+                    int v = model.triPositions[k] * 3;
+                    BvhBuilder.expand(bounds, n * 6, model.positions[v], model.positions[v + 1], model.positions[v + 2]);
+                }
+            }
+            n++;
+        }
+    }
+
+    // first vertex of each occupied cell stands in for all of the cell's
+    // vertices; open addressing on the packed cell coordinates
+    static int[] cluster(ObjModel model, double cellSize) {
+        int cap = Integer.highestOneBit(Math.max(4, model.vertexCount * 2) - 1) << 1;
+        long[] keys = new long[cap];
+        int[] reps = new int[cap];
+        Arrays.fill(reps, -1);
+        int[] map = new int[model.vertexCount];
+        for (int v = 0; v < model.vertexCount; v++) {
+            long x = (long) Math.floor(model.positions[v * 3] / cellSize) & 0x1fffff;
+            long y = (long) Math.floor(model.positions[v * 3 + 1] / cellSize) & 0x1fffff;
+            long z = (long) Math.floor(model.positions[v * 3 + 2] / cellSize) & 0x1fffff;
+            long key = x << 42 | y << 21 | z;
+            int h = (int) (key * 0x9e3779b97f4a7c15L >>> 40) & (cap - 1);
+            while (reps[h] >= 0 && keys[h] != key) h = (h + 1) & (cap - 1);
+            if (reps[h] < 0) {
+                keys[h] = key;
+                reps[h] = v;
+            }
+            map[v] = reps[h];
+        }
+        return map;
+    }
+
+    private int[] surviving(int[] full, int[] map) {
+        int[] out = new int[full.length];
+        int n = 0;
+        for (int t : full) {
+            int a = map[model.triPositions[t * 3]];
+            int b = map[model.triPositions[t * 3 + 1]];
+            int c = map[model.triPositions[t * 3 + 2]];
+            if (a != b && b != c && a != c) out[n++] = t;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // LOD to draw each chunk at for a camera at x y z, -1 where the chunk is
+    // outside the frustum or past maxDistance
+    public void select(Frustum frustum, double x, double y, double z, int[] out) {
+        for (int c = 0; c < chunkCount; c++) {
+            int o = c * 6;
+            double dx = Math.max(0, Math.max(bounds[o] - x, x - bounds[o + 3]));
+            double dy = Math.max(0, Math.max(bounds[o + 1] - y, y - bounds[o + 4]));
+            double dz = Math.max(0, Math.max(bounds[o + 2] - z, z - bounds[o + 5]));
+            double dist = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            if (dist > maxDistance || !frustum.intersects(bounds, o)) {
+                out[c] = -1;
+                continue;
+            }
+            int lod = 0;
+            while (lod < lodDistances.length && lod + 1 < vertexMaps.length && dist > lodDistances[lod]) lod++;
+            out[c] = lod;
+        }
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public int getLodCount() {
+        return vertexMaps.length;
+    }
+
+    public int getTriangleCount(int chunk, int lod) {
+        return tris[chunk][lod].length;
+    }
+}
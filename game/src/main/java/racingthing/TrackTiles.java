@@ -0,0 +1,469 @@
+package racingthing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Track collision streamed in tiles, for stages too big to hold at once.
+// The track is cut offline into a grid of tileSize squares in x z, each
+// triangle going to the square its centroid is in, and every tile baked to
+// a QuantizedBvh in <obj>.tiles, behind an index of the tiles' boxes and
+// file offsets. Like BvhCache, a file whose OBJ hash, builder or tile size
+// doesn't match is baked again.
+//
+// Once a tick, on the stepping thread, update() asks for every tile within
+// margin of an awake car: a resident tile is a hit, anything else a miss,
+// mapped and copied in on the loader thread. It then drops the least
+// recently asked for tiles until the resident ones fit in the budget,
+// keeping any asked for this tick. A car's spheres go against the tiles
+// their bounds overlap; one that isn't in yet is read right there on the
+// car's worker and counted as a stall, so the contacts never depend on how
+// fast the loader was, and a replay comes out the same at any budget.
+//
+// layout, little endian:
+//   0   int    magic 'RTTL'
+//   4   int    version
+//   8   byte[32] sha-256 of the source OBJ
+//   40  int    split ordinal, max leaf size, bins
+//   52  int    padding
+//   56  double traversal cost, intersection cost
+//   72  double tile size, grid origin x, grid origin z
+//   96  int    columns (x), rows (z), tile count, triangle count
+//   112 double overhang, how far a tile's box reaches out of its square
+//   120 int[rows * columns] tile per square, -1 for none, padded to 8 bytes
+//       double[tiles * 6] tile boxes, long[tiles + 1] tile offsets
+// then per tile, 8 byte aligned:
+//   double origin x y z, step x y z
+//   int    node count, triangle count, vertex count, depth
+//   int[nodes * 5] nodes, int[tris * 3] triangles, float[vertices * 3] vertices
+public class TrackTiles implements AutoCloseable {
+    static final int MAGIC = 0x5254544c;
+    static final int VERSION = 1;
+    static final int HEADER = 120;
+    static final int TILE_HEADER = 64;
+
+    private final FileChannel channel;
+    final double tileSize, originX, originZ, overhang;
+    final int columns, rows, tileCount, triCount;
+    private final int[] cells;
+    final double[] bounds;
+    private final long[] offsets;
+
+    // written under the lock, read without it by the cars' workers
+    private final AtomicReferenceArray<QuantizedBvh> resident;
+    // prefetches in flight, and when each tile was asked for
+    private final CompletableFuture<QuantizedBvh>[] loading;
+    private final long[] requestedAt;
+    private int pending;
+    // last tick each tile was asked for, for eviction
+    private final long[] lastUsed;
+    private long tick;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "tile-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private long budget = 64L << 20;
+    private double margin = 16;
+    private long residentBytes;
+    private long hits, misses, stalls, loads, evictions;
+    private long loadNanos, maxLoadNanos;
+    private final double[] box = new double[6];
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private TrackTiles(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        tileSize = map.getDouble(72);
+        originX = map.getDouble(80);
+        originZ = map.getDouble(88);
+        columns = map.getInt(96);
+        rows = map.getInt(100);
+        tileCount = map.getInt(104);
+        triCount = map.getInt(108);
+        overhang = map.getDouble(112);
+        cells = new int[columns * rows];
+        bounds = new double[tileCount * 6];
+        offsets = new long[tileCount + 1];
+        map.position(HEADER);
+        map.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(cells);
+        map.position(indexAt(cells.length));
+        map.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(bounds);
+        map.position(indexAt(cells.length) + bounds.length * 8);
+        map.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(offsets);
+
+        resident = new AtomicReferenceArray<>(tileCount);
+        loading = new CompletableFuture[tileCount];
+        requestedAt = new long[tileCount];
+        lastUsed = new long[tileCount];
+        Arrays.fill(lastUsed, -1);
+    }
+
+    private static int indexAt(int cellCount) {
+        return HEADER + (cellCount * 4 + 7 & ~7);
+    }
+
+    // opens the baked <obj>.tiles, baking it first on a miss
+    public static TrackTiles load(String objPath, BvhBuilder builder, double tileSize) throws IOException {
+        return load(objPath, null, builder, tileSize);
+    }
+
+    // model is objPath already parsed, or null to parse it only on a miss
+    public static TrackTiles load(String objPath, ObjModel model, BvhBuilder builder, double tileSize)
+            throws IOException {
+        Path obj = Path.of(objPath);
+        Path file = Path.of(objPath + ".tiles");
+        byte[] hash = BvhCache.hash(obj);
+        if (Files.isRegularFile(file) && matches(file, hash, builder, tileSize)) return new TrackTiles(file);
+
+        if (model == null) model = ObjModel.load(objPath);
+        try {
+            bake(model, builder, tileSize, hash, file);
+        } catch (IOException e) {
+            // a read-only asset directory just means baking into a temporary
+            // file, and again next time
+            System.err.println("could not write " + file + ": " + e);
+            file = Files.createTempFile("racingthing", ".tiles");
+            file.toFile().deleteOnExit();
+            bake(model, builder, tileSize, hash, file);
+        }
+        return new TrackTiles(file);
+    }
+
+    // false for anything unreadable as well, so it is baked again
+    private static boolean matches(Path file, byte[] hash, BvhBuilder builder, double tileSize) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER) return false;
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) return false;
+            byte[] stored = new byte[32];
+            map.get(8, stored);
+            return Arrays.equals(stored, hash)
+                && map.getInt(40) == builder.split.ordinal()
+                && map.getInt(44) == builder.maxLeafSize
+                && map.getInt(48) == builder.bins
+                && map.getDouble(56) == builder.traversalCost
+                && map.getDouble(64) == builder.intersectionCost
+                && map.getDouble(72) == tileSize;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static void bake(ObjModel model, BvhBuilder builder, double tileSize, byte[] hash, Path file)
+            throws IOException {
+        double[] soup = model.toTriangleSoup();
+        int n = model.getTriangleCount();
+        // triangles bucketed by square, empty squares dropped
+        TriangleGrid grid = new TriangleGrid(model, tileSize);
+        int columns = grid.columns, rows = grid.rows;
+        double minX = grid.minX, minZ = grid.minZ;
+        int[] cellStart = grid.cellStart, byCell = grid.byCell;
+
+        int[] cells = new int[columns * rows];
+        List<QuantizedBvh> tiles = new ArrayList<>();
+        double overhang = 0;
+        for (int c = 0; c < columns * rows; c++) {
+            int count = cellStart[c + 1] - cellStart[c];
+            if (count == 0) {
+                cells[c] = -1;
+                continue;
+            }
+            double[] tris = new double[count * 9];
+            for (int k = 0; k < count; k++) System.arraycopy(soup, byCell[cellStart[c] + k] * 9, tris, k * 9, 9);
+            QuantizedBvh tile = new QuantizedBvh(builder.build(tris, count));
+            double[] b = tile.getBounds(0, new double[6], 0);
+            double x0 = minX + (c % columns) * tileSize, z0 = minZ + (c / columns) * tileSize;
+            overhang = Math.max(overhang, Math.max(Math.max(x0 - b[0], b[3] - x0 - tileSize),
+                Math.max(z0 - b[2], b[5] - z0 - tileSize)));
+            cells[c] = tiles.size();
+            tiles.add(tile);
+        }
+
+        int indexAt = indexAt(cells.length);
+        long[] offsets = new long[tiles.size() + 1];
+        offsets[0] = indexAt + tiles.size() * 6L * 8 + offsets.length * 8L;
+        for (int t = 0; t < tiles.size(); t++) {
+            QuantizedBvh q = tiles.get(t);
+            offsets[t + 1] = offsets[t] + (TILE_HEADER + q.getBytes() + 7 & ~7);
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_WRITE, 0, indexAt);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            map.putInt(0, MAGIC);
+            map.putInt(4, VERSION);
+            map.put(8, hash);
+            map.putInt(40, builder.split.ordinal());
+            map.putInt(44, builder.maxLeafSize);
+            map.putInt(48, builder.bins);
+            map.putDouble(56, builder.traversalCost);
+            map.putDouble(64, builder.intersectionCost);
+            map.putDouble(72, tileSize);
+            map.putDouble(80, minX);
+            map.putDouble(88, minZ);
+            map.putInt(96, columns);
+            map.putInt(100, rows);
+            map.putInt(104, tiles.size());
+            map.putInt(108, n);
+            map.putDouble(112, overhang);
+            map.position(HEADER);
+            map.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(cells);
+
+            map = ch.map(FileChannel.MapMode.READ_WRITE, indexAt, offsets[0] - indexAt);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            double[] b = new double[6];
+            for (QuantizedBvh q : tiles) {
+                q.getBounds(0, b, 0);
+                for (int k = 0; k < 6; k++) map.putDouble(b[k]);
+            }
+            for (long o : offsets) map.putLong(o);
+
+            // one tile mapped at a time, so baking a stage never maps it all
+            for (int t = 0; t < tiles.size(); t++) {
+                QuantizedBvh q = tiles.get(t);
+                map = ch.map(FileChannel.MapMode.READ_WRITE, offsets[t], offsets[t + 1] - offsets[t]);
+                map.order(ByteOrder.LITTLE_ENDIAN);
+                map.putDouble(q.originX).putDouble(q.originY).putDouble(q.originZ);
+                map.putDouble(q.stepX).putDouble(q.stepY).putDouble(q.stepZ);
+                map.putInt(q.nodeCount).putInt(q.triCount).putInt(q.vertexCount).putInt(q.depth);
+                map.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(q.nodes).put(q.tris);
+                map.position(TILE_HEADER + (q.nodes.length + q.tris.length) * 4);
+                map.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(q.verts);
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // maps one tile and copies it out; on the loader thread, or a car's
+    // worker when it stalls
+    private QuantizedBvh read(int t) {
+        try {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, offsets[t], offsets[t + 1] - offsets[t]);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            double ox = map.getDouble(), oy = map.getDouble(), oz = map.getDouble();
+            double sx = map.getDouble(), sy = map.getDouble(), sz = map.getDouble();
+            int nodeCount = map.getInt(), tris = map.getInt(), vertices = map.getInt(), depth = map.getInt();
+            int[] nodes = new int[nodeCount * QuantizedBvh.NODE], indices = new int[tris * 3];
+            float[] verts = new float[vertices * 3];
+            map.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(nodes).get(indices);
+            map.position(TILE_HEADER + (nodes.length + indices.length) * 4);
+            map.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(verts);
+            return new QuantizedBvh(nodes, indices, verts, ox, oy, oz, sx, sy, sz, depth);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // On the stepping thread before the cars integrate: picks up finished
+    // loads, asks for the tiles around every awake car and evicts down to
+    // the budget.
+    public synchronized void update(List<Car> cars) {
+        tick++;
+        if (pending > 0) {
+            for (int t = 0; t < tileCount; t++) {
+                if (loading[t] != null && loading[t].isDone()) install(t, loading[t].join());
+            }
+        }
+        for (Car car : cars) {
+            if (car.isAsleep()) continue;
+            car.getParticles().bounds(box, 0);
+            for (int a = 0; a < 3; a++) {
+                box[a] -= margin;
+                box[a + 3] += margin;
+            }
+            int ix0 = column(box[0] - overhang), ix1 = column(box[3] + overhang);
+            int iz0 = row(box[2] - overhang), iz1 = row(box[5] + overhang);
+            for (int iz = iz0; iz <= iz1; iz++) {
+                for (int ix = ix0; ix <= ix1; ix++) {
+                    int t = cells[iz * columns + ix];
+                    if (t < 0 || !overlaps(t, box) || lastUsed[t] == tick) continue;
+                    lastUsed[t] = tick;
+                    if (resident.get(t) != null) {
+                        hits++;
+                    } else if (loading[t] == null) {
+                        misses++;
+                        requestedAt[t] = System.nanoTime();
+                        loading[t] = CompletableFuture.supplyAsync(() -> read(t), loader);
+                        pending++;
+                    }
+                }
+            }
+        }
+        evict();
+    }
+
+    // Every particle against the tiles their bounds overlap, in grid order.
+    // Runs on the car's worker; box is the caller's scratch.
+    public void collide(ParticleSystem particles, double[] box) {
+        particles.bounds(box, 0);
+        int ix0 = column(box[0] - overhang), ix1 = column(box[3] + overhang);
+        int iz0 = row(box[2] - overhang), iz1 = row(box[5] + overhang);
+        for (int iz = iz0; iz <= iz1; iz++) {
+            for (int ix = ix0; ix <= ix1; ix++) {
+                int t = cells[iz * columns + ix];
+                if (t < 0 || !overlaps(t, box)) continue;
+                QuantizedBvh tile = resident.get(t);
+                particles.collide(tile != null ? tile : stall(t));
+            }
+        }
+    }
+
+    // a tile a car needs right now: read it here rather than wait behind
+    // whatever the loader has queued
+    private synchronized QuantizedBvh stall(int t) {
+        QuantizedBvh tile = resident.get(t);
+        if (tile != null) return tile;
+        stalls++;
+        if (loading[t] == null) {
+            requestedAt[t] = System.nanoTime();
+            lastUsed[t] = tick;
+        }
+        install(t, loading[t] != null && loading[t].isDone() ? loading[t].join() : read(t));
+        return resident.get(t);
+    }
+
+    private void install(int t, QuantizedBvh tile) {
+        if (loading[t] != null) {
+            loading[t] = null;
+            pending--;
+        }
+        long nanos = System.nanoTime() - requestedAt[t];
+        loadNanos += nanos;
+        maxLoadNanos = Math.max(maxLoadNanos, nanos);
+        loads++;
+        resident.set(t, tile);
+        residentBytes += tile.getBytes();
+    }
+
+    // least recently asked for first, never one asked for this tick
+    private void evict() {
+        while (residentBytes > budget) {
+            int oldest = -1;
+            for (int t = 0; t < tileCount; t++) {
+                if (resident.get(t) == null || lastUsed[t] == tick) continue;
+                if (oldest < 0 || lastUsed[t] < lastUsed[oldest]) oldest = t;
+            }
+            if (oldest < 0) return;
+            residentBytes -= resident.get(oldest).getBytes();
+            resident.set(oldest, null);
+            evictions++;
+        }
+    }
+
+    private int column(double x) {
+        return (int) Math.max(0, Math.min(columns - 1, Math.floor((x - originX) / tileSize)));
+    }
+
+    private int row(double z) {
+        return (int) Math.max(0, Math.min(rows - 1, Math.floor((z - originZ) / tileSize)));
+    }
+
+    private boolean overlaps(int t, double[] b) {
+        int o = t * 6;
+        return b[0] <= bounds[o + 3] && b[3] >= bounds[o]
+            && b[1] <= bounds[o + 4] && b[4] >= bounds[o + 1]
+            && b[2] <= bounds[o + 5] && b[5] >= bounds[o + 2];
+    }
+
+    // bytes of resident tiles to evict down to, between ticks
+    public synchronized void setBudget(long bytes) {
+        budget = bytes;
+    }
+
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    // how far around a car's bounds tiles are loaded ahead of time
+    public synchronized void setMargin(double margin) {
+        this.margin = margin;
+    }
+
+    public double getTileSize() {
+        return tileSize;
+    }
+
+    public int getTileCount() {
+        return tileCount;
+    }
+
+    public int getTriangleCount() {
+        return triCount;
+    }
+
+    public synchronized int getResidentCount() {
+        int n = 0;
+        for (int t = 0; t < tileCount; t++) {
+            if (resident.get(t) != null) n++;
+        }
+        return n;
+    }
+
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    // tile asks in update() that found it resident, once per tile per tick
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    // tile asks in update() that had to start a load
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    // tiles a car needed before their load was done
+    public synchronized long getStalls() {
+        return stalls;
+    }
+
+    public synchronized long getLoads() {
+        return loads;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    // from the ask to the tile being resident, summed over all loads
+    public synchronized long getLoadNanos() {
+        return loadNanos;
+    }
+
+    public synchronized long getMaxLoadNanos() {
+        return maxLoadNanos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        loader.shutdownNow();
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TrackTiles[triangles=%d, tiles=%d, %dx%d of %.0f]",
+            triCount, tileCount, columns, rows, tileSize);
+    }
+}
@@ -0,0 +1,81 @@
+package racingthing;
+
+import javafx.geometry.Point3D;
+import javafx.scene.Group;
+import javafx.scene.PerspectiveCamera;
+import javafx.scene.paint.PhongMaterial;
+
+import java.io.IOException;
+import java.util.Map;
+
+// Track drawn as TrackChunks: one Mesh per chunk and LOD, all built up front
+// and kept in the scene graph. update() shows at most one LOD per chunk and
+// hides the rest, so nothing is rebuilt or reattached while driving.
+public class TrackView extends Group {
+    final TrackChunks chunks;
+    // per chunk, per LOD
+    final Mesh[][] meshes;
+    final Frustum frustum = new Frustum();
+    final int[] selected;
+    // LOD each chunk was last shown at, -1 for hidden
+    final int[] shown;
+    int visibleTriangles;
+
+    public TrackView(ObjModel model) throws IOException {
+        this(new TrackChunks(model, 48, 1.5, 6));
+    }
+
+    public TrackView(TrackChunks chunks) throws IOException {
+        this.chunks = chunks;
+        Map<String, PhongMaterial> materials = Mesh.loadMaterials(chunks.model);
+        Mesh.Scratch scratch = new Mesh.Scratch();
+        int n = chunks.getChunkCount();
+        meshes = new Mesh[n][chunks.getLodCount()];
+        selected = new int[n];
+        shown = new int[n];
+        for (int c = 0; c < n; c++) {
+            for (int l = 0; l < chunks.getLodCount(); l++) {
+                int[] tris = chunks.tris[c][l];
+                meshes[c][l] = new Mesh(chunks.model, materials, tris, tris.length, chunks.vertexMaps[l], scratch);
+                meshes[c][l].setVisible(l == 0);
+                getChildren().add(meshes[c][l]);
+            }
+            visibleTriangles += chunks.getTriangleCount(c, 0);
+        }
+    }
+
+    // camera position and direction are taken into this node's space, so
+    // transforms on parents and on the camera both count
+    public void update(PerspectiveCamera camera, double aspect) {
+        Point3D eye = sceneToLocal(camera.localToScene(0, 0, 0));
+        Point3D ahead = sceneToLocal(camera.localToScene(0, 0, 1));
+        Point3D above = sceneToLocal(camera.localToScene(0, -1, 0));
+        double fov = camera.isVerticalFieldOfView() ? camera.getFieldOfView()
+            : Math.toDegrees(2 * Math.atan(Math.tan(Math.toRadians(camera.getFieldOfView()) / 2) / aspect));
+        frustum.set(
+            eye.getX(), eye.getY(), eye.getZ(),
+            ahead.getX() - eye.getX(), ahead.getY() - eye.getY(), ahead.getZ() - eye.getZ(),
+            above.getX() - eye.getX(), above.getY() - eye.getY(), above.getZ() - eye.getZ(),
+            fov, aspect, camera.getNearClip(), camera.getFarClip()
+        );
+        chunks.select(frustum, eye.getX(), eye.getY(), eye.getZ(), selected);
+
+        visibleTriangles = 0;
+        for (int c = 0; c < selected.length; c++) {
+            int lod = selected[c];
+            if (lod >= 0) visibleTriangles += chunks.getTriangleCount(c, lod);
+            if (lod == shown[c]) continue;
+            if (shown[c] >= 0) meshes[c][shown[c]].setVisible(false);
+            if (lod >= 0) meshes[c][lod].setVisible(true);
+            shown[c] = lod;
+        }
+    }
+
+    public TrackChunks getChunks() {
+        return chunks;
+    }
+
+    public int getVisibleTriangles() {
+        return visibleTriangles;
+    }
+}
@@ -0,0 +1,56 @@
+package racingthing;
+
+import java.util.Arrays;
+
+// A model's triangles bucketed onto an x/z grid of cellSize squares by
+// centroid, the one split behind both the render chunks and the collision
+// tiles. The grid starts at the model's min x and z; cell iz * columns + ix
+// holds byCell[cellStart[c] .. cellStart[c + 1]], in model order.
+final class TriangleGrid {
+    final double cellSize, minX, minZ;
+    final int columns, rows;
+    final int[] cellStart, byCell;
+
+    TriangleGrid(ObjModel model, double cellSize) {
+        this.cellSize = cellSize;
+        double minX = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int v = 0; v < model.vertexCount; v++) {
+            minX = Math.min(minX, model.positions[v * 3]);
+            maxX = Math.max(maxX, model.positions[v * 3]);
+            minZ = Math.min(minZ, model.positions[v * 3 + 2]);
+            maxZ = Math.max(maxZ, model.positions[v * 3 + 2]);
+        }
+        if (model.vertexCount == 0) minX = maxX = minZ = maxZ = 0;
+        this.minX = minX;
+        this.minZ = minZ;
+        columns = Math.max(1, (int) Math.ceil((maxX - minX) / cellSize));
+        rows = Math.max(1, (int) Math.ceil((maxZ - minZ) / cellSize));
+
+        int[] cell = new int[model.triCount];
+        cellStart = new int[columns * rows + 1];
+        for (int t = 0; t < model.triCount; t++) {
+            double cx = 0, cz = 0;
+            for (int k = t * 3; k < t * 3 + 3; k++) {
+                cx += model.positions[model.triPositions[k] * 3];
+                cz += model.positions[model.triPositions[k] * 3 + 2];
+            }
+            int ix = Math.min(columns - 1, (int) ((cx / 3 - minX) / cellSize));
+            int iz = Math.min(rows - 1, (int) ((cz / 3 - minZ) / cellSize));
+            cell[t] = iz * columns + ix;
+            cellStart[cell[t] + 1]++;
+        }
+        for (int c = 0; c < columns * rows; c++) cellStart[c + 1] += cellStart[c];
+        byCell = new int[model.triCount];
+        int[] fill = Arrays.copyOf(cellStart, columns * rows);
+        for (int t = 0; t < model.triCount; t++) byCell[fill[cell[t]]++] = t;
+    }
+
+    int getCellCount() {
+        return columns * rows;
+    }
+
+    int count(int c) {
+        return cellStart[c + 1] - cellStart[c];
+    }
+}
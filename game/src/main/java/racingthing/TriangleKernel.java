@@ -0,0 +1,59 @@
+package racingthing;
+
+// Closest points on a run of track triangles to one point, the inner loop
+// of every sphere vs track test. This is the scalar version, one triangle at
+// a time through CollisionSphere.closestPointOnTriangle. create() hands out
+// VectorTriangleKernel instead when the JVM was started with
+// --add-modules jdk.incubator.vector, unless -Dracingthing.simd=false; its
+// points are the same bit for bit. Holds its own output arrays, so every
+// caller needs its own.
+public class TriangleKernel {
+    static final boolean SIMD = Boolean.parseBoolean(System.getProperty("racingthing.simd", "true"))
+        && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    // whether create() hands out VectorTriangleKernel, and so whether a
+    // LinearBvh needs its component arrays at all
+    static final boolean VECTOR = SIMD && VectorTriangleKernel.S.length() <= LinearBvh.SOA_PAD;
+
+    // filled by closest(): entry j is the closest point on the run's j-th
+    // triangle and its squared distance; past n they hold junk
+    double[] cx = new double[16], cy = new double[16], cz = new double[16], d2 = new double[16];
+    private final double[] closest = new double[3];
+
+    public static TriangleKernel create() {
+        return VECTOR ? new VectorTriangleKernel() : new TriangleKernel();
+    }
+
+    public static TriangleKernel scalar() {
+        return new TriangleKernel();
+    }
+
+    // triangles first until first + n, or idx[first] until idx[first + n]
+    // when idx isn't null
+    public void closest(LinearBvh bvh, int[] idx, int first, int n, double x, double y, double z) {
+        ensure(n);
+        for (int j = 0; j < n; j++) {
+            int t = idx == null ? first + j : idx[first + j];
+            CollisionSphere.closestPointOnTriangle(x, y, z, bvh.tris, t * 9, closest);
+            double dx = x - closest[0], dy = y - closest[1], dz = z - closest[2];
+            cx[j] = closest[0];
+            cy[j] = closest[1];
+            cz[j] = closest[2];
+            d2[j] = dx * dx + dy * dy + dz * dz;
+        }
+    }
+
+    void ensure(int n) {
+        if (n > cx.length) {
+            int size = Math.max(n, cx.length * 2);
+            cx = new double[size];
+            cy = new double[size];
+            cz = new double[size];
+            d2 = new double[size];
+        }
+    }
+
+    // triangles per step: 1 here, the vector length in VectorTriangleKernel
+    public int getWidth() {
+        return 1;
+    }
+}
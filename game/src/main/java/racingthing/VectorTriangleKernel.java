@@ -0,0 +1,133 @@
+package racingthing;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// TriangleKernel over packets of as many triangles as the widest double
+// vector holds (4 with AVX2, 8 with AVX-512), loaded straight out of the
+// BVH's component arrays, or copied together for a contact cache's index
+// list. Every region of the scalar test is worked out for all lanes and
+// blended in where its condition holds, the last region first, so each lane
+// ends up with the region the scalar branches pick, built from the same
+// operations in the same order: same bits, not just close. Only loaded
+// when jdk.incubator.vector is present.
+final class VectorTriangleKernel extends TriangleKernel {
+    static final VectorSpecies<Double> S = DoubleVector.SPECIES_PREFERRED;
+
+    // one packet copied out of bvh.tris for an index list, component major
+    private final double[] gathered = new double[9 * S.length()];
+
+    @Override
+    public void closest(LinearBvh bvh, int[] idx, int first, int n, double x, double y, double z) {
+        int w = S.length();
+        ensure(n + w);
+        DoubleVector px = DoubleVector.broadcast(S, x), py = DoubleVector.broadcast(S, y);
+        DoubleVector pz = DoubleVector.broadcast(S, z);
+        // a run of the tree's own triangles loads straight from its
+        // component arrays; an index list is copied a packet at a time
+        // rather than gathered, as 17's C2 can crash on a method with both
+        double[] src = idx == null ? bvh.soa : gathered;
+        int stride = idx == null ? bvh.soaStride : w;
+        for (int j = 0; j < n; j += w) {
+            int at = first + j;
+            if (idx != null) {
+                double[] tris = bvh.tris;
+                for (int l = 0, m = Math.min(w, n - j); l < m; l++) {
+                    int o = idx[at + l] * 9;
+                    for (int c = 0; c < 9; c++) gathered[c * w + l] = tris[o + c];
+                }
+                at = 0;
+            }
+            DoubleVector ax = DoubleVector.fromArray(S, src, at);
+            DoubleVector ay = DoubleVector.fromArray(S, src, stride + at);
+            DoubleVector az = DoubleVector.fromArray(S, src, 2 * stride + at);
+            DoubleVector bx = DoubleVector.fromArray(S, src, 3 * stride + at);
+            DoubleVector by = DoubleVector.fromArray(S, src, 4 * stride + at);
+            DoubleVector bz = DoubleVector.fromArray(S, src, 5 * stride + at);
+            DoubleVector cx = DoubleVector.fromArray(S, src, 6 * stride + at);
+            DoubleVector cy = DoubleVector.fromArray(S, src, 7 * stride + at);
+            DoubleVector cz = DoubleVector.fromArray(S, src, 8 * stride + at);
+
+            // spelled out with no helper methods: C2 stops inlining small
+            // calls partway through a method this size, and every vector
+            // handed to one that isn't inlined is boxed on the heap
+            DoubleVector abx = bx.sub(ax), aby = by.sub(ay), abz = bz.sub(az);
+            DoubleVector acx = cx.sub(ax), acy = cy.sub(ay), acz = cz.sub(az);
+            DoubleVector apx = px.sub(ax), apy = py.sub(ay), apz = pz.sub(az);
+            DoubleVector d1 = abx.mul(apx).add(aby.mul(apy)).add(abz.mul(apz));
+            DoubleVector d2 = acx.mul(apx).add(acy.mul(apy)).add(acz.mul(apz));
+            DoubleVector bpx = px.sub(bx), bpy = py.sub(by), bpz = pz.sub(bz);
+            DoubleVector d3 = abx.mul(bpx).add(aby.mul(bpy)).add(abz.mul(bpz));
+            DoubleVector d4 = acx.mul(bpx).add(acy.mul(bpy)).add(acz.mul(bpz));
+            DoubleVector vc = d1.mul(d4).sub(d3.mul(d2));
+            DoubleVector cpx = px.sub(cx), cpy = py.sub(cy), cpz = pz.sub(cz);
+            DoubleVector d5 = abx.mul(cpx).add(aby.mul(cpy)).add(abz.mul(cpz));
+            DoubleVector d6 = acx.mul(cpx).add(acy.mul(cpy)).add(acz.mul(cpz));
+            DoubleVector vb = d5.mul(d2).sub(d1.mul(d6));
+            DoubleVector va = d3.mul(d6).sub(d5.mul(d4));
+
+            // inside the face
+            DoubleVector denom = DoubleVector.broadcast(S, 1.0).div(va.add(vb).add(vc));
+            DoubleVector v = vb.mul(denom), u = vc.mul(denom);
+            DoubleVector rx = ax.add(abx.mul(v)).add(acx.mul(u));
+            DoubleVector ry = ay.add(aby.mul(v)).add(acy.mul(u));
+            DoubleVector rz = az.add(abz.mul(v)).add(acz.mul(u));
+
+            // edge bc
+            DoubleVector d43 = d4.sub(d3), d56 = d5.sub(d6);
+            VectorMask<Double> m = va.compare(VectorOperators.LE, 0).and(d43.compare(VectorOperators.GE, 0))
+                .and(d56.compare(VectorOperators.GE, 0));
+            DoubleVector t = d43.div(d43.add(d56));
+            rx = rx.blend(bx.add(cx.sub(bx).mul(t)), m);
+            ry = ry.blend(by.add(cy.sub(by).mul(t)), m);
+            rz = rz.blend(bz.add(cz.sub(bz).mul(t)), m);
+
+            // edge ac
+            m = vb.compare(VectorOperators.LE, 0).and(d2.compare(VectorOperators.GE, 0))
+                .and(d6.compare(VectorOperators.LE, 0));
+            t = d2.div(d2.sub(d6));
+            rx = rx.blend(ax.add(acx.mul(t)), m);
+            ry = ry.blend(ay.add(acy.mul(t)), m);
+            rz = rz.blend(az.add(acz.mul(t)), m);
+
+            // corner c
+            m = d6.compare(VectorOperators.GE, 0).and(d5.compare(VectorOperators.LE, d6));
+            rx = rx.blend(cx, m);
+            ry = ry.blend(cy, m);
+            rz = rz.blend(cz, m);
+
+            // edge ab
+            m = vc.compare(VectorOperators.LE, 0).and(d1.compare(VectorOperators.GE, 0))
+                .and(d3.compare(VectorOperators.LE, 0));
+            t = d1.div(d1.sub(d3));
+            rx = rx.blend(ax.add(abx.mul(t)), m);
+            ry = ry.blend(ay.add(aby.mul(t)), m);
+            rz = rz.blend(az.add(abz.mul(t)), m);
+
+            // corner b
+            m = d3.compare(VectorOperators.GE, 0).and(d4.compare(VectorOperators.LE, d3));
+            rx = rx.blend(bx, m);
+            ry = ry.blend(by, m);
+            rz = rz.blend(bz, m);
+
+            // corner a
+            m = d1.compare(VectorOperators.LE, 0).and(d2.compare(VectorOperators.LE, 0));
+            rx = rx.blend(ax, m);
+            ry = ry.blend(ay, m);
+            rz = rz.blend(az, m);
+
+            DoubleVector dx = px.sub(rx), dy = py.sub(ry), dz = pz.sub(rz);
+            rx.intoArray(this.cx, j);
+            ry.intoArray(this.cy, j);
+            rz.intoArray(this.cz, j);
+            dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz)).intoArray(this.d2, j);
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return S.length();
+    }
+}
@@ -0,0 +1,161 @@
+package racingthing;
+
+import javafx.geometry.Point3D;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+// All cars on one track. The track BVH is loaded once and only ever read
+// (a tiled track only loads and drops tiles on the stepping thread, before
+// the cars integrate), and every car keeps its own particles, sticks,
+// input and query scratch, so a step hands each car to a different worker
+// without any locking. Car vs car contacts sit between the two parallel
+// halves of the tick and run on the stepping thread, since a push moves
+// both cars of a pair. A sleeping car skips both halves: a resting car
+// touching it is pushed off it as if off a wall, a moving one wakes it.
+public class World {
+    private final CollisionMesh track;
+    private final List<Car> cars = new ArrayList<>();
+    private final ForkJoinPool pool;
+    private final SweepAndPrune broadPhase = new SweepAndPrune();
+    private int carContacts;
+    private final Metrics metrics = new Metrics();
+    // every car's wheel rays, cast together in one walk of the track
+    private final RayCast wheelCast = new RayCast();
+    private double[] wheelRays = new double[0], wheelHits = new double[0];
+
+    public World(CollisionMesh track) {
+        this(track, ForkJoinPool.commonPool());
+    }
+
+    public World(CollisionMesh track, ForkJoinPool pool) {
+        this.track = track;
+        this.pool = pool;
+    }
+
+    public Car addCar(Point3D startPos, String collisionDataPath) throws IOException {
+        return addCar(startPos, collisionDataPath, null);
+    }
+
+    // a car on raycast wheels, or on its chassis spheres with wheelDataPath
+    // null; Car rejects wheels on a track without a LinearBvh
+    public Car addCar(Point3D startPos, String collisionDataPath, String wheelDataPath) throws IOException {
+        Car car = new Car(startPos, track, collisionDataPath, wheelDataPath);
+        cars.add(car);
+        int rays = 0;
+        for (Car each : cars) rays += each.getWheelCount();
+        wheelRays = new double[rays * RayCast.RAY];
+        wheelHits = new double[rays * RayCast.HIT];
+        return car;
+    }
+
+    public void step() {
+        if (track.isTiled()) track.getTiles().update(cars);
+        castWheels();
+        forEachCar(Car::integrate);
+
+        long t = Metrics.now();
+        broadPhase.update(cars);
+        carContacts = 0;
+        for (int p = 0; p < broadPhase.pairCount; p++) {
+            int ia = broadPhase.pairs[p * 2], ib = broadPhase.pairs[p * 2 + 1];
+            Car a = cars.get(ia), b = cars.get(ib);
+            if (a.isAsleep() && b.isAsleep()) continue;
+            // a car settling against a sleeping one takes the whole push and
+            // leaves it asleep; anything faster than resting wakes both
+            boolean settling = (a.isAsleep() || b.isAsleep()) && a.isResting() && b.isResting();
+            double share = !settling ? 0.5 : a.isAsleep() ? 0 : 1;
+            int contacts = a.getParticles().collide(b.getParticles(), broadPhase.boxes, ib * 6, share);
+            if (contacts > 0 && !settling) {
+                a.wake();
+                b.wake();
+            }
+            carContacts += contacts;
+        }
+        metrics.lap(Metrics.Phase.CAR_CONTACTS, t);
+        metrics.count(Metrics.Counter.CONTACTS, carContacts);
+
+        forEachCar(Car::solve);
+    }
+
+    // on the stepping thread, before the cars integrate: a handful of rays
+    // per car is too little work to split
+    private void castWheels() {
+        if (wheelHits.length == 0) return;
+        long t = Metrics.now();
+        long nodes = wheelCast.nodeVisits, tests = wheelCast.triangleTests;
+        int n = 0;
+        for (Car car : cars) n += car.getWheelRays(wheelRays, n * RayCast.RAY);
+        wheelCast.castAll(track.getBvh(), wheelRays, n, wheelHits);
+        n = 0;
+        for (Car car : cars) {
+            if (car.isAsleep()) continue;
+            car.setWheelHits(wheelHits, n * RayCast.HIT);
+            n += car.getWheelCount();
+        }
+        metrics.lap(Metrics.Phase.COLLIDE, t);
+        if (Metrics.ENABLED) {
+            metrics.count(Metrics.Counter.NODES_VISITED, wheelCast.nodeVisits - nodes);
+            metrics.count(Metrics.Counter.TRIANGLES_TESTED, wheelCast.triangleTests - tests);
+        }
+    }
+
+    private void forEachCar(Consumer<Car> phase) {
+        int n = cars.size();
+        if (n == 1 || pool.getParallelism() == 1) {
+            for (int i = 0; i < n; i++) phase.accept(cars.get(i));
+        } else {
+            pool.submit(() -> IntStream.range(0, n).parallel().forEach(i -> phase.accept(cars.get(i)))).join();
+        }
+    }
+
+    // start spots in rows of four behind pole, a car length and a car width apart
+    public static Point3D gridSlot(Point3D pole, int i) {
+        return pole.add((i % 4) * 6.0, 0, -(i / 4) * 3.0);
+    }
+
+    public CollisionMesh getTrack() {
+        return track;
+    }
+
+    public SweepAndPrune getBroadPhase() {
+        return broadPhase;
+    }
+
+    // sphere pairs pushed apart between cars in the last step
+    public int getCarContacts() {
+        return carContacts;
+    }
+
+    public int getSleepingCars() {
+        int n = 0;
+        for (Car car : cars) {
+            if (car.isAsleep()) n++;
+        }
+        return n;
+    }
+
+    public int getAwakeCars() {
+        return cars.size() - getSleepingCars();
+    }
+
+    // broad and narrow phase between cars; each car has its own for the rest
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    // hands the world's and every car's metrics so far to report
+    public MetricsReport addMetricsTo(MetricsReport report) {
+        report.add(metrics);
+        for (Car car : cars) report.add(car.getMetrics());
+        return report;
+    }
+
+    public List<Car> getCars() {
+        return Collections.unmodifiableList(cars);
+    }
+}
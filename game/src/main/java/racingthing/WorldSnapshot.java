@@ -0,0 +1,77 @@
+package racingthing;
+
+import java.util.List;
+
+// Render side copy of every car's body pose and sphere positions for the two
+// newest ticks, so a frame can be drawn anywhere between them. Written only
+// by the physics thread and read only after it has been handed over through
+// a SnapshotBuffer.
+public class WorldSnapshot {
+    // per car: quaternion w x y z, center x y z, then 3 per sphere;
+    // car c spans offsets[c] .. offsets[c + 1]
+    final int[] offsets;
+    final double[] prev, cur;
+    long tick;
+    // System.nanoTime() when cur was captured
+    long capturedNanos;
+
+    WorldSnapshot(List<Car> cars) {
+        offsets = new int[cars.size() + 1];
+        for (int c = 0; c < cars.size(); c++) {
+            offsets[c + 1] = offsets[c] + 7 + cars.get(c).getParticles().getParticleCount() * 3;
+        }
+        prev = new double[offsets[cars.size()]];
+        cur = new double[prev.length];
+    }
+
+    // fills cur from the cars and prev from last, then copies cur into last
+    void capture(List<Car> cars, double[] last, long tick, long nanos) {
+        for (int c = 0; c < cars.size(); c++) {
+            Car car = cars.get(c);
+            int o = offsets[c];
+            car.getBodyFit().getQuaternion(cur, o);
+            car.getBodyFit().getTranslation(cur, o + 4);
+            ParticleSystem p = car.getParticles();
+            System.arraycopy(p.pos, 0, cur, o + 7, p.getParticleCount() * 3);
+        }
+        System.arraycopy(last, 0, prev, 0, last.length);
+        System.arraycopy(cur, 0, last, 0, last.length);
+        this.tick = tick;
+        this.capturedNanos = nanos;
+    }
+
+    public int getCarCount() {
+        return offsets.length - 1;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public long getCapturedNanos() {
+        return capturedNanos;
+    }
+
+    // body pose of car c at alpha between prev (0) and cur (1): quaternion
+    // w x y z then center x y z, written to out
+    public void getPose(int c, double alpha, double[] out) {
+        int o = offsets[c];
+        double dot = 0;
+        for (int k = 0; k < 4; k++) dot += prev[o + k] * cur[o + k];
+        double sign = dot < 0 ? -1 : 1;
+        double len = 0;
+        for (int k = 0; k < 4; k++) {
+            out[k] = prev[o + k] * sign + (cur[o + k] - prev[o + k] * sign) * alpha;
+            len += out[k] * out[k];
+        }
+        len = Math.sqrt(len);
+        for (int k = 0; k < 4; k++) out[k] /= len;
+        for (int k = 4; k < 7; k++) out[k] = prev[o + k] + (cur[o + k] - prev[o + k]) * alpha;
+    }
+
+    // particle i of car c at alpha, x y z written to out
+    public void getSphere(int c, int i, double alpha, double[] out) {
+        int o = offsets[c] + 7 + i * 3;
+        for (int k = 0; k < 3; k++) out[k] = prev[o + k] + (cur[o + k] - prev[o + k]) * alpha;
+    }
+}
@@ -0,0 +1,38 @@
+package racingthing;
+
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class BvhBuilderTest {
+    static void assertSameTree(LinearBvh expected, LinearBvh actual) {
+        Assertions.assertEquals(expected.nodeCount, actual.nodeCount);
+        Assertions.assertEquals(expected.triCount, actual.triCount);
+        Assertions.assertEquals(expected.depth, actual.depth);
+        Assertions.assertArrayEquals(expected.bounds, actual.bounds);
+        Assertions.assertArrayEquals(expected.nodes, actual.nodes);
+        Assertions.assertArrayEquals(expected.tris, actual.tris);
+        Assertions.assertEquals(expected.expectedCost, actual.expectedCost);
+    }
+
+    // subtrees handed out down to 64 triangles, on pools of several sizes
+    // and the common one, against one thread doing the whole tree
+    @Test
+    void parallelBuildMatchesSequential() throws Exception {
+        for (BvhBuilder.Split split : BvhBuilder.Split.values()) {
+            LinearBvh sequential = TestMap.build(new BvhBuilder(split, 8, 16, 1.0, 2.0, BvhBuilder.SEQUENTIAL));
+            for (int threads : new int[] { 1, 2, 4, 8 }) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    BvhBuilder parallel = new BvhBuilder(split, 8, 16, 1.0, 2.0, 64);
+                    LinearBvh bvh = parallel.build(TestMap.model().toTriangleSoup(),
+                        TestMap.model().getTriangleCount(), pool);
+                    assertSameTree(sequential, bvh);
+                } finally {
+                    pool.shutdown();
+                }
+            }
+            assertSameTree(sequential, TestMap.build(new BvhBuilder(split, 8, 16, 1.0, 2.0, 64)));
+        }
+    }
+}
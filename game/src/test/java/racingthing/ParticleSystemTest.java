@@ -0,0 +1,114 @@
+package racingthing;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ParticleSystemTest {
+    // a tetrahedron of sticks with one corner pulled out of shape
+    static ParticleSystem tetrahedron(double compliance) {
+        ParticleSystem p = new ParticleSystem();
+        p.addParticle(0, 0, 0, 0.1);
+        p.addParticle(1, 0, 0, 0.1);
+        p.addParticle(0, 0, 1, 0.1);
+        p.addParticle(0.3, 1, 0.3, 0.1);
+        for (int a = 0; a < 4; a++) {
+            for (int b = a + 1; b < 4; b++) p.addStick(a, b, compliance);
+        }
+        p.pos[9] += 0.4;
+        p.pos[10] += 0.3;
+        return p;
+    }
+
+    static double maxStretch(ParticleSystem p) {
+        double err = 0;
+        for (int s = 0; s < p.stickCount; s++) {
+            int a = p.stickA[s] * 3, b = p.stickB[s] * 3;
+            double dx = p.pos[b] - p.pos[a], dy = p.pos[b + 1] - p.pos[a + 1], dz = p.pos[b + 2] - p.pos[a + 2];
+            err = Math.max(err, Math.abs(Math.sqrt(dx * dx + dy * dy + dz * dz) - p.restLength[s]));
+        }
+        return err;
+    }
+
+    @Test
+    void rigidSticksStopOnLengthError() {
+        ParticleSystem p = tetrahedron(0);
+        int sweeps = p.solveSticks(200, 1e-9);
+        Assertions.assertTrue(sweeps < 200, "no convergence in 200 sweeps");
+        Assertions.assertTrue(p.getStickError() < 1e-9);
+        Assertions.assertEquals(maxStretch(p), p.getStickError(), 0);
+    }
+
+    @Test
+    void compliantSticksConvergeAndGive() {
+        ParticleSystem rigid = tetrahedron(0), soft = tetrahedron(0.5);
+        rigid.solveSticks(200, 1e-9);
+        int sweeps = soft.solveSticks(200, 1e-9);
+        Assertions.assertTrue(sweeps < 200, "no convergence in 200 sweeps");
+        Assertions.assertTrue(soft.getStickError() < 1e-9);
+        // a compliant stick only comes part of the way back
+        Assertions.assertTrue(maxStretch(soft) > 1e-3, "compliance had no effect");
+        Assertions.assertTrue(maxStretch(soft) > maxStretch(rigid));
+    }
+
+    // The shared walk, each sphere's own walk to fill its cache, and no
+    // cache at all push a sphere out of the same triangles in the same
+    // order, so to the same bits, as long as it ends up within the margin
+    // of where its list was gathered; past that the cached walks also go
+    // over what the push has brought into reach, and may differ.
+    @Test
+    void batchedWalkFindsTheSameContacts() throws Exception {
+        LinearBvh bvh = TestMap.bvh();
+        ParticleSystem batched = TestMap.spheresOnTrack(bvh, 2000, 0.4, 0.1, 15);
+        ParticleSystem single = TestMap.spheresOnTrack(bvh, 2000, 0.4, 0.1, 15);
+        ParticleSystem uncached = TestMap.spheresOnTrack(bvh, 2000, 0.4, 0.1, 15);
+        uncached.cacheMargin = 0;
+        double margin = batched.cacheMargin;
+        boolean[] apart = new boolean[uncached.count];
+        int compared = 0;
+        for (int round = 0; round < 4; round++) {
+            double[] start = uncached.pos.clone(), center = batched.cacheCenter.clone();
+            batched.collide(bvh);
+            for (int i = 0; i < single.count; i++) single.collide(i, bvh);
+            uncached.collide(bvh);
+            for (int i = 0; i < uncached.count; i++) {
+                int o = i * 3;
+                // where the list the tick started with was gathered
+                double[] gathered = round == 0 || !within(start, o, center, margin) ? start : center;
+                apart[i] |= !within(uncached.pos, o, gathered, margin);
+                if (apart[i]) continue;
+                for (int k = o; k < o + 3; k++) {
+                    String where = "round " + round + " particle " + i;
+                    long expected = Double.doubleToLongBits(uncached.pos[k]);
+                    Assertions.assertEquals(expected, Double.doubleToLongBits(batched.pos[k]), where + " batched");
+                    Assertions.assertEquals(expected, Double.doubleToLongBits(single.pos[k]), where + " one walk each");
+                }
+                compared++;
+            }
+        }
+        Assertions.assertTrue(uncached.trackContacts > 0);
+        Assertions.assertTrue(batched.getCacheMisses() > 0 && batched.getCacheHits() > 0);
+        Assertions.assertTrue(compared > 4 * uncached.count * 9 / 10, "only " + compared + " compared");
+    }
+
+    // spheres sunk deep enough for their own push to carry them past the
+    // margin still end the tick with a list that covers where they are
+    @Test
+    void deepPushRefreshesTheCache() throws Exception {
+        LinearBvh bvh = TestMap.bvh();
+        ParticleSystem p = TestMap.spheresOnTrack(bvh, 2000, 0.4, 0.4, 14);
+        double[] start = p.pos.clone();
+        p.collide(bvh);
+        int far = 0;
+        for (int i = 0; i < p.count; i++) {
+            if (!within(p.pos, i * 3, start, p.cacheMargin)) far++;
+            Assertions.assertTrue(within(p.pos, i * 3, p.cacheCenter, p.cacheMargin), "particle " + i);
+        }
+        Assertions.assertTrue(far > 0, "no push went past the margin");
+        Assertions.assertTrue(p.getCacheMisses() > p.count);
+    }
+
+    static boolean within(double[] a, int o, double[] b, double d) {
+        double dx = a[o] - b[o], dy = a[o + 1] - b[o + 1], dz = a[o + 2] - b[o + 2];
+        return dx * dx + dy * dy + dz * dz <= d * d;
+    }
+}
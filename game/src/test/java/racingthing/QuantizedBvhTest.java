@@ -0,0 +1,104 @@
+package racingthing;
+
+import java.util.BitSet;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class QuantizedBvhTest {
+    // every node's decoded box holds the rounded triangles under it
+    @Test
+    void boundsHoldTheirTriangles() throws Exception {
+        QuantizedBvh q = new QuantizedBvh(TestMap.bvh());
+        double[] box = new double[6], tri = new double[9];
+        for (int node = 0; node < q.nodeCount; node++) {
+            if (!q.isLeaf(node)) continue;
+            q.getBounds(node, box, 0);
+            int first = q.nodes[node * QuantizedBvh.NODE + 3], n = q.nodes[node * QuantizedBvh.NODE + 4];
+            for (int t = first; t < first + n; t++) {
+                q.triangle(t, tri, 0);
+                for (int c = 0; c < 9; c++) {
+                    Assertions.assertTrue(tri[c] >= box[c % 3] && tri[c] <= box[3 + c % 3],
+                        "node " + node + " triangle " + t);
+                }
+            }
+        }
+        for (int node = 0; node < q.nodeCount; node++) {
+            if (q.isLeaf(node)) continue;
+            double[] parent = q.getBounds(node, new double[6], 0);
+            int right = q.nodes[node * QuantizedBvh.NODE + 3];
+            for (int child : new int[] { node + 1, right }) {
+                q.getBounds(child, box, 0);
+                for (int a = 0; a < 3; a++) {
+                    Assertions.assertTrue(box[a] >= parent[a] && box[a + 3] <= parent[a + 3], "node " + child);
+                }
+            }
+        }
+    }
+
+    // triangles within r of x y z, found by walking the LinearBvh
+    static BitSet contacts(LinearBvh bvh, double x, double y, double z, double r) {
+        BitSet found = new BitSet();
+        double[] closest = new double[3];
+        int[] stack = new int[bvh.depth + 1];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (!bvh.AABBSphereTest(node, x, y, z, r)) continue;
+            if (bvh.isLeaf(node)) {
+                int first = bvh.nodes[node * 2], n = bvh.nodes[node * 2 + 1];
+                for (int t = first; t < first + n; t++) {
+                    CollisionSphere.closestPointOnTriangle(x, y, z, bvh.tris, t * 9, closest);
+                    double dx = x - closest[0], dy = y - closest[1], dz = z - closest[2];
+                    if (dx * dx + dy * dy + dz * dz < r * r) found.set(t);
+                }
+            } else {
+                stack[top++] = bvh.nodes[node * 2];
+                stack[top++] = node + 1;
+            }
+        }
+        return found;
+    }
+
+    // triangles in every leaf the QuantizedBvh walk reaches for x y z
+    static BitSet reached(QuantizedBvh bvh, double x, double y, double z, double r) {
+        BitSet found = new BitSet();
+        int[] stack = new int[bvh.depth + 1];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (!bvh.AABBSphereTest(node, x, y, z, r)) continue;
+            int b = node * QuantizedBvh.NODE;
+            if (bvh.isLeaf(node)) {
+                found.set(bvh.nodes[b + 3], bvh.nodes[b + 3] + bvh.nodes[b + 4]);
+            } else {
+                stack[top++] = bvh.nodes[b + 3];
+                stack[top++] = node + 1;
+            }
+        }
+        return found;
+    }
+
+    // the LinearBvh and QuantizedBvh keep the same leaf order, so triangle
+    // t is the same triangle in both; every contact through the full tree
+    // has to be reachable through the packed one
+    @Test
+    void reachesEveryContact() throws Exception {
+        LinearBvh bvh = TestMap.bvh();
+        QuantizedBvh q = new QuantizedBvh(bvh);
+        ParticleSystem spheres = TestMap.spheresOnTrack(bvh, 5000, 0.4, 0.4, 24);
+        int contacts = 0;
+        for (int i = 0; i < spheres.count; i++) {
+            double x = spheres.getX(i), y = spheres.getY(i), z = spheres.getZ(i);
+            for (double r : new double[] { 0.05, 0.4, 2 }) {
+                BitSet expected = contacts(bvh, x, y, z, r);
+                BitSet missed = (BitSet) expected.clone();
+                missed.andNot(reached(q, x, y, z, r));
+                Assertions.assertTrue(missed.isEmpty(), "sphere " + i + " radius " + r + " misses " + missed);
+                contacts += expected.cardinality();
+            }
+        }
+        Assertions.assertTrue(contacts > spheres.count);
+    }
+}
@@ -0,0 +1,45 @@
+package racingthing;
+
+import java.io.IOException;
+import java.util.Random;
+
+// The game's own track, parsed and built once for every test that needs a
+// real one. Built straight from the OBJ, without going through BvhCache.
+final class TestMap {
+    private static ObjModel model;
+    private static LinearBvh bvh;
+
+    static synchronized ObjModel model() throws IOException {
+        if (model == null) model = ObjModel.load(Assets.resolve("assets/Maps/TestMap/TestMap.obj"));
+        return model;
+    }
+
+    static synchronized LinearBvh bvh() throws IOException {
+        if (bvh == null) bvh = build(new BvhBuilder(BvhBuilder.Split.SAH, 8));
+        return bvh;
+    }
+
+    static LinearBvh build(BvhBuilder builder) throws IOException {
+        return builder.build(model().toTriangleSoup(), model().getTriangleCount());
+    }
+
+    // n spheres of radius r, each sunk up to depth into a random track
+    // triangle's face from its front side, so most of them touch the track
+    static ParticleSystem spheresOnTrack(LinearBvh bvh, int n, double r, double depth, long seed) {
+        Random random = new Random(seed);
+        ParticleSystem p = new ParticleSystem();
+        double[] t = bvh.tris;
+        for (int i = 0; i < n; i++) {
+            int o = random.nextInt(bvh.triCount) * 9;
+            double u = random.nextDouble(), v = random.nextDouble() * (1 - u);
+            double abx = t[o + 3] - t[o], aby = t[o + 4] - t[o + 1], abz = t[o + 5] - t[o + 2];
+            double acx = t[o + 6] - t[o], acy = t[o + 7] - t[o + 1], acz = t[o + 8] - t[o + 2];
+            double nx = aby * acz - abz * acy, ny = abz * acx - abx * acz, nz = abx * acy - aby * acx;
+            double len = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            double h = len > 0 ? (r - depth * random.nextDouble()) / len : 0;
+            p.addParticle(t[o] + abx * u + acx * v + nx * h, t[o + 1] + aby * u + acy * v + ny * h,
+                t[o + 2] + abz * u + acz * v + nz * h, r);
+        }
+        return p;
+    }
+}
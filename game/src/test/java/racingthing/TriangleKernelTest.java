@@ -0,0 +1,130 @@
+package racingthing;
+
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+class TriangleKernelTest {
+    static final int TRIANGLES = 64;
+
+    // random triangles, then degenerate ones: a point, two corners on one
+    // spot, three corners on a line, and a sliver
+    static double[] triangles(Random random) {
+        double[] tris = new double[(TRIANGLES + 4) * 9];
+        for (int i = 0; i < TRIANGLES * 9; i++) tris[i] = random.nextDouble() * 4 - 2;
+        int o = TRIANGLES * 9;
+        double[][] degenerate = {
+            { 0.5, 0.5, 0.5, 0.5, 0.5, 0.5, 0.5, 0.5, 0.5 },
+            { 0, 0, 0, 0, 0, 0, 1, 1, 0 },
+            { 0, 0, 0, 1, 1, 1, 2, 2, 2 },
+            { 0, 0, 0, 1, 0, 0, 0.5, 1e-12, 0 },
+        };
+        for (double[] d : degenerate) {
+            System.arraycopy(d, 0, tris, o, 9);
+            o += 9;
+        }
+        return tris;
+    }
+
+    // one leaf over all of tris, which is all the kernels look at
+    static LinearBvh run(double[] tris) {
+        int n = tris.length / 9;
+        return new LinearBvh(new double[6], new int[] { 0, n }, tris, 1, n, 0, 0);
+    }
+
+    // points in every Voronoi region of triangle t: past each corner, off
+    // each edge, over the face, and right on the corners and edges
+    static void probes(double[] tris, int t, Random random, double[] out) {
+        int o = t * 9;
+        double gx = (tris[o] + tris[o + 3] + tris[o + 6]) / 3;
+        double gy = (tris[o + 1] + tris[o + 4] + tris[o + 7]) / 3;
+        double gz = (tris[o + 2] + tris[o + 5] + tris[o + 8]) / 3;
+        int k = 0;
+        for (int c = 0; c < 3; c++) {
+            int a = o + c * 3, b = o + (c + 1) % 3 * 3;
+            double s = 0.5 + random.nextDouble();
+            for (int d = 0; d < 3; d++) {
+                double corner = tris[a + d], mid = (tris[a + d] + tris[b + d]) / 2;
+                out[k + d] = corner + (corner - (d == 0 ? gx : d == 1 ? gy : gz)) * s;
+                out[k + 3 + d] = mid + (mid - (d == 0 ? gx : d == 1 ? gy : gz)) * s;
+                out[k + 6 + d] = corner;
+                out[k + 9 + d] = mid;
+            }
+            k += 12;
+        }
+        out[k] = gx + random.nextGaussian();
+        out[k + 1] = gy + random.nextGaussian();
+        out[k + 2] = gz + random.nextGaussian();
+    }
+
+    static void assertSame(TriangleKernel expected, TriangleKernel actual, int n, String where) {
+        for (int j = 0; j < n; j++) {
+            Assertions.assertEquals(Double.doubleToLongBits(expected.cx[j]), Double.doubleToLongBits(actual.cx[j]),
+                () -> where + " x");
+            Assertions.assertEquals(Double.doubleToLongBits(expected.cy[j]), Double.doubleToLongBits(actual.cy[j]),
+                () -> where + " y");
+            Assertions.assertEquals(Double.doubleToLongBits(expected.cz[j]), Double.doubleToLongBits(actual.cz[j]),
+                () -> where + " z");
+            Assertions.assertEquals(Double.doubleToLongBits(expected.d2[j]), Double.doubleToLongBits(actual.d2[j]),
+                () -> where + " d2");
+        }
+    }
+
+    @Test
+    void vectorMatchesScalarBitForBit() {
+        Assumptions.assumeTrue(TriangleKernel.VECTOR, "no jdk.incubator.vector, only the scalar kernel runs");
+        Random random = new Random(21);
+        double[] tris = triangles(random);
+        LinearBvh bvh = run(tris);
+        int n = bvh.triCount;
+        int[] idx = new int[n];
+        for (int i = 0; i < n; i++) idx[i] = (i * 37 + 11) % n;
+
+        TriangleKernel scalar = TriangleKernel.scalar(), vector = TriangleKernel.create();
+        Assertions.assertNotSame(TriangleKernel.class, vector.getClass());
+        double[] p = new double[39];
+        for (int t = 0; t < n; t++) {
+            probes(tris, t, random, p);
+            for (int q = 0; q < p.length; q += 3) {
+                double x = p[q], y = p[q + 1], z = p[q + 2];
+                // whole runs, runs that don't fill the last packet, and index lists
+                for (int first = 0; first < 3; first++) {
+                    int m = n - first * 5;
+                    String where = "triangle " + t + " probe " + q / 3 + " from " + first;
+                    scalar.closest(bvh, null, first, m, x, y, z);
+                    vector.closest(bvh, null, first, m, x, y, z);
+                    assertSame(scalar, vector, m, where);
+                    scalar.closest(bvh, idx, first, m, x, y, z);
+                    vector.closest(bvh, idx, first, m, x, y, z);
+                    assertSame(scalar, vector, m, where + " indexed");
+                }
+            }
+        }
+    }
+
+    // the same pushes out of the real track with either kernel, straight
+    // off the tree and through the contact caches
+    @Test
+    void contactsMatchOnTestMap() throws Exception {
+        Assumptions.assumeTrue(TriangleKernel.VECTOR, "no jdk.incubator.vector, only the scalar kernel runs");
+        LinearBvh bvh = TestMap.bvh();
+        for (double margin : new double[] { 0, 0.25 }) {
+            ParticleSystem scalar = TestMap.spheresOnTrack(bvh, 2000, 0.4, 0.4, 7);
+            ParticleSystem vector = TestMap.spheresOnTrack(bvh, 2000, 0.4, 0.4, 7);
+            scalar.kernel = TriangleKernel.scalar();
+            scalar.cacheMargin = vector.cacheMargin = margin;
+            for (int round = 0; round < 3; round++) {
+                scalar.collide(bvh);
+                vector.collide(bvh);
+            }
+            Assertions.assertTrue(vector.trackContacts > 0);
+            Assertions.assertEquals(scalar.trackContacts, vector.trackContacts);
+            for (int i = 0; i < scalar.count * 3; i++) {
+                int at = i;
+                Assertions.assertEquals(Double.doubleToLongBits(scalar.pos[i]), Double.doubleToLongBits(vector.pos[i]),
+                    () -> "margin " + margin + " particle " + at / 3);
+            }
+        }
+    }
+}